@@ -1,14 +1,59 @@
 package gamelogic;
 
 import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public abstract class Bot {
 
 	private static final Random rand = new Random();
 	
-	public abstract boolean isNextMoveReady();
+	// all bots compute their moves on this pool, so one process can drive many bots at once
+	private static final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+		Thread thread = new Thread(runnable, "bot");
+		thread.setDaemon(true);
+		return thread;
+	});
 	
-	public abstract int getNextMove(Gamelogic position);
+	/**
+	 * This function starts computing a move for the player to move in the background.
+	 * The position is copied, so the caller can keep changing it. Cancelling the returned future stops the computation.
+	 * @return the future column index of the move
+	 */
+	public CompletableFuture<Integer> requestMove(Gamelogic position, long budgetMillis) {
+		Gamelogic requestedPosition = new Gamelogic(position);
+		CompletableFuture<Integer> request = new CompletableFuture<>();
+		executor.execute(() -> {
+			// a request that was cancelled while waiting doesn't need to be computed
+			if (request.isDone()) {
+				return;
+			}
+			try {
+				request.complete(computeMove(requestedPosition, budgetMillis, request));
+			} catch (Throwable e) {
+				// otherwise the request would never complete and the game would wait for the move forever
+				request.completeExceptionally(e);
+			}
+		});
+		return request;
+	}
+	
+	/**
+	 * This function computes the move, it is called on a thread of the shared executor
+	 * @param request can be checked to stop early if the request was cancelled
+	 * @return the column index of the move
+	 */
+	protected abstract int computeMove(Gamelogic position, long budgetMillis, Future<Integer> request);
+	
+	// called before the bot plays a new game, bots that keep state between moves reset it here
+	public void initNewGame() {
+	}
+	
+	protected static ExecutorService getExecutor() {
+		return executor;
+	}
 	
 	protected int getPossibleRandomMove(Gamelogic position) {
 		int columnIndex;
@@ -1,7 +1,14 @@
 package gamelogic;
 
 import java.awt.Graphics;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 import gamelogic.Gamelogic.Boardstate;
 import visuals.Grid;
@@ -10,6 +17,8 @@ import visuals.InfoText;
 public class Game {
 
 	private static final Random rand = new Random();
+	// finished games are recorded if a record file is given, shared by all games of the process
+	private static final GameRecordWriter gameRecordWriter = openGameRecords();
 
 	public enum Gamemode {
 		PLAYER_VS_PLAYER,
@@ -30,8 +39,8 @@ public class Game {
 
 	private Gamelogic gamelogic;
 	private Bot currentBot;
+	private CompletableFuture<Integer> requestedBotMove;
 	private MinimaxBot minimaxBot;
-	private SimpleBot simpleBot;
 	private Grid grid;
 	private InfoText infoText;
 
@@ -55,17 +64,43 @@ public class Game {
 		infoText = new InfoText(this);
 
 		// computer AI
-		minimaxBot = new MinimaxBot(gamelogic);
-		simpleBot = new SimpleBot();
+		minimaxBot = new MinimaxBot();
+		minimaxBot.setUseSolver(true);
+		minimaxBot.setPondering(true);
+		minimaxBot.setOpeningBook(loadOpeningBook());
 
 		initNewGame();
 	}
 
+	private static GameRecordWriter openGameRecords() {
+		try {
+			return GameRecordWriter.openFromProperty();
+		} catch (IOException e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	// the opening book is optional, it is written by the OpeningBookGenerator
+	private static OpeningBook loadOpeningBook() {
+		Path path = Paths.get(OpeningBook.DEFAULT_FILE_NAME);
+		if (Files.exists(path) == false) {
+			return null;
+		}
+		try {
+			return OpeningBook.open(path);
+		} catch (IOException e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+
 	/**
 	 * This function starts a new game with the current player being red
 	 */
 	private void initNewGame() {
 		gamestate = Gamestate.PLAYING;
+		cancelBotMove();
 		gamelogic.initNewGame();
 		grid.initNewGame();
 		minimaxBot.initNewGame();
@@ -92,18 +127,33 @@ public class Game {
 				if (timeSinceLastDrop > dropTime) {
 					timeSinceLastDrop -= dropTime;
 
-					int columnIndex = -1; 
-					while (gamelogic.isPossibleMove(columnIndex) == false) {
-						columnIndex = rand.nextInt(gamelogic.getNumOfColumns());
-					}
-					doMove(columnIndex, false);
+					doMove(gamelogic.getRandomMove(rand), false);
 				}
 				break;
 
 			case PLAYER_VS_COMPUTER:
 				if (gamelogic.getCurrentPlayer() == Boardstate.YELLOW) {
-					if (currentBot.isNextMoveReady()) {
-						doMove(currentBot.getNextMove(gamelogic), false);				
+					// the bot computes its move in the background, the move is played in the frame it is done
+					if (requestedBotMove == null) {
+						requestedBotMove = currentBot.requestMove(gamelogic, MinimaxBot.DEFAULT_TIME_BUDGET_MILLIS);
+					} else if (requestedBotMove.isDone()) {
+						int columnIndex;
+						boolean botFailed = false;
+						try {
+							columnIndex = requestedBotMove.join();
+						} catch (CompletionException | CancellationException e) {
+							// the bot failed, the game goes on with a random move
+							e.printStackTrace();
+							columnIndex = gamelogic.getRandomMove(rand);
+							botFailed = true;
+						}
+						requestedBotMove = null;
+						doMove(columnIndex, false);
+
+						// printed here and not by the bot, so printing doesn't slow down the search
+						if (botFailed == false && currentBot == minimaxBot && minimaxBot.getStatistics() != null) {
+							System.out.println(minimaxBot.getStatistics());
+						}
 					}
 				}
 				break;
@@ -156,6 +206,7 @@ public class Game {
 		// game won or draw?
 		if (gamelogic.didGameEnd()) {
 			gamestate = Gamestate.MATCH_ENDED;
+			recordGame();
 
 			if (gamelogic.didGameEndInWin()) {
 				// start animation
@@ -165,6 +216,19 @@ public class Game {
 
 	}
 
+	// only a few games are played here -> write every game right away
+	private void recordGame() {
+		if (gameRecordWriter == null) {
+			return;
+		}
+		try {
+			gameRecordWriter.write(gamelogic);
+			gameRecordWriter.flush();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
 	public void undoLastMove() {
 		if (gamestate == Gamestate.IN_RESET_ANIMATION || gamelogic.getNumOfMovesPlayed() <= 0) {
 			return;
@@ -173,6 +237,9 @@ public class Game {
 		//		// update state of game
 		gamestate = Gamestate.PLAYING;
 
+		// the requested move doesn't fit to the position anymore
+		cancelBotMove();
+
 		// save column index
 		int colInd = gamelogic.getLastMove();
 
@@ -232,22 +299,30 @@ public class Game {
 	public void toggleSingleplayerMode() {
 		if (gamemode == Gamemode.PLAYER_VS_COMPUTER) {
 			gamemode = Gamemode.PLAYER_VS_PLAYER;
-			minimaxBot.stop();
-			currentBot = null;
+			stopBots();
 
 		} else {
 			gamemode = Gamemode.PLAYER_VS_COMPUTER;
+			currentBot = minimaxBot;
+		}
+	}
 
-			// minimax bot is atm only implemented for the standard 6x7-grid
-			if (gamelogic.getNumOfRows() <= Main.STANDARD_NUM_ROWS && gamelogic.getNumOfColumns() <= Main.STANDARD_NUM_COLUMNS) {
-				minimaxBot.start();
-				currentBot = minimaxBot;
-			} else {
-				currentBot = simpleBot;
-			}
+	private void cancelBotMove() {
+		if (requestedBotMove != null) {
+			requestedBotMove.cancel(false);
+			requestedBotMove = null;
 		}
 	}
 
+	/**
+	 * This function stops the computer player, including its pondering
+	 */
+	public void stopBots() {
+		cancelBotMove();
+		minimaxBot.stopPondering();
+		currentBot = null;
+	}
+
 	public int mouseXToColumnIndex(int mouseX) {
 		return grid.mouseXToColumnIndex(mouseX);
 	}
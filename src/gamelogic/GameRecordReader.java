@@ -0,0 +1,186 @@
+package gamelogic;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import gamelogic.Gamelogic.Boardstate;
+
+/**
+ * Reads the game records written by the GameRecordWriter. The file is memory-mapped and the records are decoded in place,
+ * files larger than the mapping window are mapped piece by piece.
+ *
+ * File layout: a header (magic number, version) followed by the records. A record has 3 bytes:
+ * number of rows and columns (4 bits each), coins needed for a win and result (4 bits each), number of moves,
+ * followed by the moves with 3 bits per move on boards with at most 8 columns, 4 bits otherwise, lowest bits first.
+ */
+public class GameRecordReader implements Closeable {
+
+	static final int MAGIC = 0x43344752;
+	static final int VERSION = 1;
+	static final int HEADER_SIZE = 2 * Integer.BYTES;
+	static final int RECORD_HEADER_SIZE = 3;
+	// board sizes and win conditions are stored in 4 bits
+	static final int MAX_SIZE = 15;
+	static final int MAX_RECORD_SIZE = RECORD_HEADER_SIZE + (MAX_SIZE * MAX_SIZE * 4 + 7) / 8;
+
+	// results: the game was not finished, draw, or the winner
+	static final int UNFINISHED = 0;
+	static final int DRAW = 1;
+	static final int RED_WON = 2;
+	static final int YELLOW_WON = 3;
+
+	private static final long WINDOW_SIZE = 1 << 30;
+
+	private final FileChannel channel;
+	private final long fileSize;
+	private MappedByteBuffer buffer;
+	// file position of the mapped window
+	private long windowStart;
+
+	// the current record, offsets in the mapped window
+	private int recordOffset = -1;
+	private int nextRecordOffset;
+	private int numRows;
+	private int numColumns;
+	private int numNeedForWin;
+	private int result;
+	private int numMoves;
+	private int bitsPerMove;
+
+	private GameRecordReader(FileChannel channel) throws IOException {
+		this.channel = channel;
+		this.fileSize = channel.size();
+		mapWindow(0);
+		nextRecordOffset = HEADER_SIZE;
+	}
+
+	public static GameRecordReader open(Path path) throws IOException {
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+		GameRecordReader reader = new GameRecordReader(channel);
+		if (reader.fileSize < HEADER_SIZE || reader.buffer.getInt(0) != MAGIC || reader.buffer.getInt(Integer.BYTES) != VERSION) {
+			reader.close();
+			throw new IOException("not a game record file: " + path);
+		}
+		return reader;
+	}
+
+	private void mapWindow(long start) throws IOException {
+		windowStart = start;
+		buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(WINDOW_SIZE, fileSize - start));
+	}
+
+	/**
+	 * This function moves to the next record
+	 * @return false if there are no more records
+	 */
+	public boolean next() throws IOException {
+		if (windowStart + nextRecordOffset >= fileSize) {
+			return false;
+		}
+		// the record could reach over the end of the window -> map the next window starting at the record
+		if (nextRecordOffset + MAX_RECORD_SIZE > buffer.capacity() && windowStart + buffer.capacity() < fileSize) {
+			mapWindow(windowStart + nextRecordOffset);
+			nextRecordOffset = 0;
+		}
+		if (nextRecordOffset + RECORD_HEADER_SIZE > buffer.capacity()) {
+			throw new IOException("game record is truncated");
+		}
+
+		recordOffset = nextRecordOffset;
+		int size = buffer.get(recordOffset) & 0xFF;
+		int rule = buffer.get(recordOffset + 1) & 0xFF;
+		numRows = size >>> 4;
+		numColumns = size & 0xF;
+		numNeedForWin = rule >>> 4;
+		result = rule & 0xF;
+		numMoves = buffer.get(recordOffset + 2) & 0xFF;
+		bitsPerMove = getBitsPerMove(numColumns);
+		nextRecordOffset = recordOffset + getRecordSize(numMoves, bitsPerMove);
+		if (nextRecordOffset > buffer.capacity()) {
+			throw new IOException("game record is truncated");
+		}
+		return true;
+	}
+
+	static int getBitsPerMove(int numColumns) {
+		return (numColumns <= 8) ? 3 : 4;
+	}
+
+	static int getRecordSize(int numMoves, int bitsPerMove) {
+		return RECORD_HEADER_SIZE + (numMoves * bitsPerMove + 7) / 8;
+	}
+
+	public int getNumOfRows() {
+		return numRows;
+	}
+
+	public int getNumOfColumns() {
+		return numColumns;
+	}
+
+	public int getNumNeedForWin() {
+		return numNeedForWin;
+	}
+
+	public int getNumOfMoves() {
+		return numMoves;
+	}
+
+	public boolean isFinished() {
+		return result != UNFINISHED;
+	}
+
+	// the winner of the game, NOT_DROPPED for a draw or an unfinished game
+	public Boardstate getWinner() {
+		switch (result) {
+		case RED_WON:
+			return Boardstate.RED;
+
+		case YELLOW_WON:
+			return Boardstate.YELLOW;
+
+		default:
+			return Boardstate.NOT_DROPPED;
+		}
+	}
+
+	// the column index of the move, decoded from the mapped file
+	public int getMove(int moveIndex) {
+		int bit = moveIndex * bitsPerMove;
+		int byteOffset = recordOffset + RECORD_HEADER_SIZE + bit / 8;
+		int bits = buffer.get(byteOffset) & 0xFF;
+		// a move can reach into the next byte
+		if (bit % 8 + bitsPerMove > 8) {
+			bits |= (buffer.get(byteOffset + 1) & 0xFF) << 8;
+		}
+		return (bits >>> (bit % 8)) & ((1 << bitsPerMove) - 1);
+	}
+
+	/**
+	 * This function plays the moves of the record on the game, which is started again before.
+	 * The game has to be played on the board of the record.
+	 */
+	public void replay(Gamelogic gamelogic) {
+		gamelogic.initNewGame();
+		for (int i = 0; i < numMoves; i++) {
+			gamelogic.doMove(getMove(i));
+		}
+	}
+
+	// a new game with the moves of the record, creating a game builds its tables -> replay(Gamelogic) with one game for many records
+	public Gamelogic replay() {
+		Gamelogic gamelogic = new Gamelogic(numRows, numColumns, numNeedForWin);
+		replay(gamelogic);
+		return gamelogic;
+	}
+
+	// the mapping stays valid until the buffer is garbage collected
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+}
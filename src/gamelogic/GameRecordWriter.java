@@ -0,0 +1,166 @@
+package gamelogic;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import gamelogic.Gamelogic.Boardstate;
+
+/**
+ * Appends games to a game record file, see GameRecordReader for the layout. The records are collected in a buffer
+ * and written to the file channel in bulk. Several threads can write into the same file, threads that record many games
+ * collect them in their own buffer with putRecord and append it with writeBatch, so they don't take the lock per game.
+ */
+public class GameRecordWriter implements Closeable {
+
+	// the Simulator, the Tournament and the Game record their games into the file given with -Dgamelogic.records=[file]
+	public static final String RECORD_FILE_PROPERTY = "gamelogic.records";
+
+	private static final int BUFFER_SIZE = 1 << 20;
+
+	private final FileChannel channel;
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+	private long numGames;
+
+	// new files get a header, existing files are continued
+	public GameRecordWriter(Path path) throws IOException {
+		channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		ByteBuffer header = ByteBuffer.allocate(GameRecordReader.HEADER_SIZE);
+		if (channel.size() == 0) {
+			header.putInt(GameRecordReader.MAGIC);
+			header.putInt(GameRecordReader.VERSION);
+			header.flip();
+			while (header.hasRemaining()) {
+				channel.write(header);
+			}
+		} else {
+			channel.read(header, 0);
+			if (header.getInt(0) != GameRecordReader.MAGIC || header.getInt(Integer.BYTES) != GameRecordReader.VERSION) {
+				channel.close();
+				throw new IOException("not a game record file: " + path);
+			}
+		}
+		channel.position(channel.size());
+	}
+
+	/**
+	 * This function opens the file given in the system property
+	 * @return the writer, or null if no file is given
+	 */
+	public static GameRecordWriter openFromProperty() throws IOException {
+		String fileName = System.getProperty(RECORD_FILE_PROPERTY);
+		return (fileName != null) ? new GameRecordWriter(Paths.get(fileName)) : null;
+	}
+
+	// the game doesn't have to be finished
+	public void write(Gamelogic game) throws IOException {
+		int[] moves = game.getMoveHistory();
+		write(game.getNumOfRows(), game.getNumOfColumns(), game.getNumNeedForWin(), moves, game.getNumOfMovesPlayed(),
+				game.didGameEnd(), game.getPlayerWon());
+	}
+
+	/**
+	 * This function adds a record to the buffer, the buffer is written when it is full
+	 * @param winner the player who won, NOT_DROPPED for a draw or an unfinished game
+	 */
+	public synchronized void write(int numRows, int numColumns, int numNeedForWin, int[] moves, int numMoves,
+			boolean finished, Boardstate winner) throws IOException {
+		if (buffer.remaining() < GameRecordReader.getRecordSize(numMoves, GameRecordReader.getBitsPerMove(numColumns))) {
+			flushBuffer();
+		}
+		putRecord(buffer, numRows, numColumns, numNeedForWin, moves, numMoves, finished, winner);
+		numGames++;
+	}
+
+	/**
+	 * This function appends the records to the file, they stay together in the file
+	 * @param records the records from the position to the limit of the buffer, collected with putRecord
+	 */
+	public synchronized void writeBatch(ByteBuffer records, long numRecords) throws IOException {
+		// records of write come first, they were added before
+		flushBuffer();
+		while (records.hasRemaining()) {
+			channel.write(records);
+		}
+		numGames += numRecords;
+	}
+
+	// the size a buffer needs for a record of a full board
+	public static int getMaxRecordSize(int numRows, int numColumns) {
+		return GameRecordReader.getRecordSize(numRows * numColumns, GameRecordReader.getBitsPerMove(numColumns));
+	}
+
+	/**
+	 * This function adds a record to the given buffer, which needs enough space for it
+	 * @param winner the player who won, NOT_DROPPED for a draw or an unfinished game
+	 */
+	public static void putRecord(ByteBuffer buffer, int numRows, int numColumns, int numNeedForWin, int[] moves, int numMoves,
+			boolean finished, Boardstate winner) {
+		if (numRows > GameRecordReader.MAX_SIZE || numColumns > GameRecordReader.MAX_SIZE || numNeedForWin > GameRecordReader.MAX_SIZE) {
+			throw new IllegalArgumentException("boards with more than " + GameRecordReader.MAX_SIZE + " rows or columns can't be recorded");
+		}
+		int bitsPerMove = GameRecordReader.getBitsPerMove(numColumns);
+		buffer.put((byte) (numRows << 4 | numColumns));
+		buffer.put((byte) (numNeedForWin << 4 | getResult(finished, winner)));
+		buffer.put((byte) numMoves);
+
+		// pack the moves, lowest bits first
+		int bits = 0;
+		int numBits = 0;
+		for (int i = 0; i < numMoves; i++) {
+			bits |= moves[i] << numBits;
+			numBits += bitsPerMove;
+			if (numBits >= 8) {
+				buffer.put((byte) bits);
+				bits >>>= 8;
+				numBits -= 8;
+			}
+		}
+		if (numBits > 0) {
+			buffer.put((byte) bits);
+		}
+	}
+
+	private static int getResult(boolean finished, Boardstate winner) {
+		if (finished == false) {
+			return GameRecordReader.UNFINISHED;
+		}
+		switch (winner) {
+		case RED:
+			return GameRecordReader.RED_WON;
+
+		case YELLOW:
+			return GameRecordReader.YELLOW_WON;
+
+		default:
+			return GameRecordReader.DRAW;
+		}
+	}
+
+	private void flushBuffer() throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	// writes the buffered records into the file
+	public synchronized void flush() throws IOException {
+		flushBuffer();
+	}
+
+	public synchronized long getNumOfGames() {
+		return numGames;
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		flushBuffer();
+		channel.close();
+	}
+}
@@ -1,6 +1,8 @@
 package gamelogic;
 
 import java.util.Arrays;
+import java.util.Random;
+import java.util.random.RandomGenerator;
 
 public class Gamelogic {
 	
@@ -17,11 +19,21 @@ public class Gamelogic {
 	private final int maxNumOfMoves;
 	private final boolean isStandardSize;
 	
-	private final boolean[] possibleMoves;
 	private final int[] rowDropIndices;
 	
-	private int[] winningRowIndices;
-	private int[] winningColIndices;
+	// bitboard representation: each column uses numRows + 1 bits from the bottom up, the extra bit on top stays empty
+	// so that lines cannot wrap around into the next column. Boards with more than 64 bits use several words.
+	private final int bitsPerColumn;
+	private final int numWords;
+	private final long[] currentPlayerStones;
+	private final long[] occupiedCells;
+	
+	// every possible winning line as a bitboard mask of numWords words, and the lines through every cell
+	private final long[] lineMasks;
+	private final int[][] cellLines;
+	
+	private final int[] winningRowIndices;
+	private final int[] winningColIndices;
 	
 	private Boardstate currentPlayer;
 	private int movesPlayed;
@@ -32,20 +44,22 @@ public class Gamelogic {
 	private boolean gameEndedInDraw;
 	private Boardstate playerWon;
 	
-	// used for minimax
-	private static final int EVALUATION_UTILITY = 138;
-	private static final int[][] evaluationTable = {
-			{3, 4, 5, 7, 5, 4, 3}, 
-			{4, 6, 8, 10, 8, 6, 4},
-			{5, 8, 11, 13, 11, 8, 5}, 
-			{5, 8, 11, 13, 11, 8, 5},
-			{4, 6, 8, 10, 8, 6, 4},
-			{3, 4, 5, 7, 5, 4, 3}};
+	// directions of a line: vertical, horizontal, diagonal down and right, diagonal up and right
+	private static final int[] LINE_ROW_STEPS = {1, 0, 1, -1};
+	private static final int[] LINE_COL_STEPS = {0, 1, 1, 1};
+	
+	// used for minimax: every cell is worth the number of possible winning lines through it
+	private final int evaluationUtility;
+	private final int[][] evaluationTable;
 	private int positionEvaluation;
 	
-	private static final byte[] POWERS_OF_TWO = new byte[] {1, 2, 4, 8, 16, 32};
+	// zobrist hashing: every (cell, player) pair has a random key, the hash is the xor of the keys of all dropped coins
+	private static final long ZOBRIST_SEED = 0x436F6E6E656374L;
+	private final long[][] redZobristKeys;
+	private final long[][] yellowZobristKeys;
 	private long boardHash;
-	private final byte[] colHashes;
+	// hash of the position reflected at the middle column, mirrored positions share the smaller of both hashes
+	private long mirroredBoardHash;
 	
 	public Gamelogic(int numRows, int numColumns, int numNeedForWin) {
 		this.numRows = numRows;
@@ -55,12 +69,14 @@ public class Gamelogic {
 		this.maxNumOfMoves = numRows * numColumns;
 		
 		this.board = new Boardstate[numRows][numColumns];
-		this.possibleMoves = new boolean[numColumns];
 		this.rowDropIndices = new int[numColumns];
 		for (int i = 0; i < numColumns; i++) {
-			possibleMoves[i] = true;
 			rowDropIndices[i] = numRows - 1;
 		}
+		this.bitsPerColumn = numRows + 1;
+		this.numWords = (bitsPerColumn * numColumns + Long.SIZE - 1) / Long.SIZE;
+		this.currentPlayerStones = new long[numWords];
+		this.occupiedCells = new long[numWords];
 		this.winningRowIndices = new int[numNeedForWin];
 		this.winningColIndices = new int[numNeedForWin];
 		this.currentPlayer = Boardstate.RED;
@@ -68,32 +84,151 @@ public class Gamelogic {
 		for (int i = 0; i < maxNumOfMoves; i++) {
 			moveHistory[i] = -1;
 		}
-		this.colHashes = new byte[numColumns];
+		
+		// every cell is worth the number of lines through it
+		int[][] lines = findLines();
+		this.cellLines = createCellLines(lines);
+		this.lineMasks = createLineMasks(lines);
+		this.evaluationTable = new int[numRows][numColumns];
+		for (int rowInd = 0; rowInd < numRows; rowInd++) {
+			for (int colInd = 0; colInd < numColumns; colInd++) {
+				evaluationTable[rowInd][colInd] = cellLines[getCellIndex(rowInd, colInd)].length;
+			}
+		}
+		int evaluationSum = 0;
+		for (int[] evaluationRow : evaluationTable) {
+			for (int evaluation : evaluationRow) {
+				evaluationSum += evaluation;
+			}
+		}
+		this.evaluationUtility = evaluationSum / 2;
+		
+		Random zobristRandom = new Random(ZOBRIST_SEED);
+		this.redZobristKeys = new long[numRows][numColumns];
+		this.yellowZobristKeys = new long[numRows][numColumns];
+		for (int rowInd = 0; rowInd < numRows; rowInd++) {
+			for (int colInd = 0; colInd < numColumns; colInd++) {
+				redZobristKeys[rowInd][colInd] = zobristRandom.nextLong();
+				yellowZobristKeys[rowInd][colInd] = zobristRandom.nextLong();
+			}
+		}
 	}
 	
 	// copy constructor
 	public Gamelogic(Gamelogic gamelogic) {
-		// primitive types
+		// board size -> primitive types
 		this.numRows = gamelogic.numRows;
 		this.numColumns = gamelogic.numColumns;
 		this.isStandardSize = gamelogic.isStandardSize;
 		this.numNeedForWin = gamelogic.numNeedForWin;
 		this.maxNumOfMoves = gamelogic.maxNumOfMoves;
+		this.evaluationUtility = gamelogic.evaluationUtility;
+		this.bitsPerColumn = gamelogic.bitsPerColumn;
+		this.numWords = gamelogic.numWords;
+		
+		// immutable tables -> can be shared
+		this.evaluationTable = gamelogic.evaluationTable;
+		this.lineMasks = gamelogic.lineMasks;
+		this.cellLines = gamelogic.cellLines;
+		this.redZobristKeys = gamelogic.redZobristKeys;
+		this.yellowZobristKeys = gamelogic.yellowZobristKeys;
+		
+		// state of the game -> own arrays, filled by copyFrom
+		this.board = new Boardstate[numRows][numColumns];
+		this.rowDropIndices = new int[numColumns];
+		this.currentPlayerStones = new long[numWords];
+		this.occupiedCells = new long[numWords];
+		this.winningRowIndices = new int[numNeedForWin];
+		this.winningColIndices = new int[numNeedForWin];
+		this.moveHistory = new int[maxNumOfMoves];
+		copyFrom(gamelogic);
+	}
+	
+	/**
+	 * This function sets the game to the position of another game with the same board. Unlike the copy constructor
+	 * it allocates nothing, so a search thread can reuse its copy of the position for every search.
+	 */
+	public void copyFrom(Gamelogic gamelogic) {
+		if (isSameBoard(gamelogic) == false) {
+			throw new IllegalArgumentException("the games are played on different boards");
+		}
+		for (int rowInd = 0; rowInd < numRows; rowInd++) {
+			System.arraycopy(gamelogic.board[rowInd], 0, board[rowInd], 0, numColumns);
+		}
+		System.arraycopy(gamelogic.rowDropIndices, 0, rowDropIndices, 0, numColumns);
+		System.arraycopy(gamelogic.currentPlayerStones, 0, currentPlayerStones, 0, numWords);
+		System.arraycopy(gamelogic.occupiedCells, 0, occupiedCells, 0, numWords);
+		System.arraycopy(gamelogic.winningRowIndices, 0, winningRowIndices, 0, numNeedForWin);
+		System.arraycopy(gamelogic.winningColIndices, 0, winningColIndices, 0, numNeedForWin);
+		System.arraycopy(gamelogic.moveHistory, 0, moveHistory, 0, maxNumOfMoves);
+		
 		this.movesPlayed = gamelogic.movesPlayed;
 		this.currentPlayer = gamelogic.currentPlayer;
 		this.playerWon = gamelogic.playerWon;
 		this.gameEndedInDraw = gamelogic.gameEndedInDraw;
 		this.gameEndedInWin = gamelogic.gameEndedInWin;
 		this.positionEvaluation = gamelogic.positionEvaluation;
-		
-		// object types -> need copying
-		this.board = gamelogic.getBoard();
-		this.possibleMoves = gamelogic.getPossibleMoves();
-		this.rowDropIndices = gamelogic.getRowDropIndices();
-		this.winningRowIndices = gamelogic.getWinningRowIndices();
-		this.winningColIndices = gamelogic.getWinningColIndices();
-		this.moveHistory = gamelogic.getMoveHistory();
-		this.colHashes = gamelogic.colHashes.clone();
+		this.boardHash = gamelogic.boardHash;
+		this.mirroredBoardHash = gamelogic.mirroredBoardHash;
+	}
+	
+	// true if the other game has the same size and win condition
+	public boolean isSameBoard(Gamelogic gamelogic) {
+		return numRows == gamelogic.numRows && numColumns == gamelogic.numColumns && numNeedForWin == gamelogic.numNeedForWin;
+	}
+	
+	/**
+	 * This function finds every line of numNeedForWin cells that fits on the board, in all four directions
+	 * @return the start cell and direction of every line, as {rowIndex, columnIndex, direction}
+	 */
+	private int[][] findLines() {
+		int numLines = 0;
+		int[][] lines = new int[LINE_ROW_STEPS.length * numRows * numColumns][];
+		for (int i = 0; i < LINE_ROW_STEPS.length; i++) {
+			for (int rowInd = 0; rowInd < numRows; rowInd++) {
+				for (int colInd = 0; colInd < numColumns; colInd++) {
+					int endRowInd = rowInd + (numNeedForWin - 1) * LINE_ROW_STEPS[i];
+					int endColInd = colInd + (numNeedForWin - 1) * LINE_COL_STEPS[i];
+					if (endRowInd >= 0 && endRowInd < numRows && endColInd < numColumns) {
+						lines[numLines++] = new int[] {rowInd, colInd, i};
+					}
+				}
+			}
+		}
+		return Arrays.copyOf(lines, numLines);
+	}
+	
+	// the lines through every cell: count them first, then fill the arrays of their exact size
+	private int[][] createCellLines(int[][] lines) {
+		int[] numCellLines = new int[numRows * numColumns];
+		for (int[] line : lines) {
+			for (int off = 0; off < numNeedForWin; off++) {
+				numCellLines[getCellIndex(line[0] + off * LINE_ROW_STEPS[line[2]], line[1] + off * LINE_COL_STEPS[line[2]])]++;
+			}
+		}
+		int[][] cellLines = new int[numRows * numColumns][];
+		for (int cellIndex = 0; cellIndex < cellLines.length; cellIndex++) {
+			cellLines[cellIndex] = new int[numCellLines[cellIndex]];
+			numCellLines[cellIndex] = 0;
+		}
+		for (int line = 0; line < lines.length; line++) {
+			for (int off = 0; off < numNeedForWin; off++) {
+				int cellIndex = getCellIndex(lines[line][0] + off * LINE_ROW_STEPS[lines[line][2]], lines[line][1] + off * LINE_COL_STEPS[lines[line][2]]);
+				cellLines[cellIndex][numCellLines[cellIndex]++] = line;
+			}
+		}
+		return cellLines;
+	}
+	
+	private long[] createLineMasks(int[][] lines) {
+		long[] lineMasks = new long[lines.length * numWords];
+		for (int line = 0; line < lines.length; line++) {
+			for (int off = 0; off < numNeedForWin; off++) {
+				int bit = getCellBitIndex(lines[line][0] + off * LINE_ROW_STEPS[lines[line][2]], lines[line][1] + off * LINE_COL_STEPS[lines[line][2]]);
+				lineMasks[line * numWords + bit / Long.SIZE] |= 1L << bit;
+			}
+		}
+		return lineMasks;
 	}
 	
 	public void initNewGame() {
@@ -104,16 +239,17 @@ public class Gamelogic {
 			}
 		}
 		for (int i = 0; i < numColumns; i++) {
-			possibleMoves[i] = true;
 			rowDropIndices[i] = numRows - 1;
-			colHashes[i] = 0;
-			boardHash = 0;
 		}
+		boardHash = 0;
+		mirroredBoardHash = 0;
+		Arrays.fill(currentPlayerStones, 0);
+		Arrays.fill(occupiedCells, 0);
 		movesPlayed = 0;
 		gameEndedInWin = false;
 		gameEndedInDraw = false;
 		playerWon = Boardstate.NOT_DROPPED;
-		positionEvaluation = EVALUATION_UTILITY;
+		positionEvaluation = evaluationUtility;
 	}
 	
 	// returns true if move is valid, false otherwise
@@ -133,29 +269,19 @@ public class Gamelogic {
 		
 		// updated the board
 		board[rowIndex][columnIndex] = currentPlayer;
+		int bit = getCellBitIndex(rowIndex, columnIndex);
+		currentPlayerStones[bit / Long.SIZE] |= 1L << bit;
+		occupiedCells[bit / Long.SIZE] |= 1L << bit;
 		
 		// update evaluation and hash
-		if (isStandardSize()) {
-			updateBoardEvaluation(rowIndex, columnIndex, currentPlayer);
-			updateBoardHash(rowIndex, columnIndex, currentPlayer);
-		}
+		updateBoardEvaluation(rowIndex, columnIndex, currentPlayer, 1);
+		updateBoardHash(rowIndex, columnIndex, currentPlayer);
 		
 		// decrement the row dropping index
 		rowDropIndices[columnIndex]--;
-		if (rowDropIndices[columnIndex] < 0) {
-			possibleMoves[columnIndex] = false;
-		}
-		
-		// early exit: don't need to check for win or draw if not enough moves played
-		if (movesPlayed < 2 * numNeedForWin - 1) {
-			// switch current player
-			switchPlayer();
-
-			return true;
-		}
 		
-		// else check for win or draw:
-		checkForWinOrDraw();
+		// check for win or draw
+		checkForWinOrDraw(rowIndex, columnIndex);
 		
 		// switch current player
 		switchPlayer();
@@ -177,16 +303,16 @@ public class Gamelogic {
 		
 		// increment the row dropping index
 		int rowIndex = ++rowDropIndices[move];
-		possibleMoves[move] = true;
 		
 		// update evaluation and hash
-		if (isStandardSize()) {
-			updateBoardEvaluation(rowIndex, move, Boardstate.NOT_DROPPED);
-			updateBoardHash(rowIndex, move, Boardstate.NOT_DROPPED);
-		}
+		updateBoardEvaluation(rowIndex, move, currentPlayer, -1);
+		updateBoardHash(rowIndex, move, currentPlayer);
 		
 		// updated the board
 		board[rowIndex][move] = Boardstate.NOT_DROPPED;
+		int bit = getCellBitIndex(rowIndex, move);
+		currentPlayerStones[bit / Long.SIZE] &= ~(1L << bit);
+		occupiedCells[bit / Long.SIZE] &= ~(1L << bit);
 		
 		// decrement the number of moves played
 		movesPlayed--;
@@ -204,78 +330,70 @@ public class Gamelogic {
 		return moveHistory.clone();
 	}
 	
-	private void updateBoardEvaluation(int rowIndex, int colIndex, Boardstate player) {
-		switch (player) {
-		case NOT_DROPPED:
-			switch (board[rowIndex][colIndex]) {
-			case NOT_DROPPED:
-				break;
-			
-			case YELLOW:
-				positionEvaluation -= evaluationTable[rowIndex][colIndex];
-				break;
-				
-			case RED:
-				positionEvaluation += evaluationTable[rowIndex][colIndex];
-				break;
-			}
-			break;
-		
-		case YELLOW:
-			positionEvaluation += evaluationTable[rowIndex][colIndex];
-			break;
-			
-		case RED:
-			positionEvaluation -= evaluationTable[rowIndex][colIndex];
-			break;
+	// sign is 1 if the coin is dropped, -1 if it is removed again
+	private void updateBoardEvaluation(int rowIndex, int colIndex, Boardstate player, int sign) {
+		if (player == Boardstate.YELLOW) {
+			positionEvaluation += sign * evaluationTable[rowIndex][colIndex];
+		} else {
+			positionEvaluation -= sign * evaluationTable[rowIndex][colIndex];
 		}
 	}
 	
 	public int getBoardEvaluation() {
 		return positionEvaluation;
+	}
+	
+	// the evaluation of the empty board, positions better for yellow are evaluated higher
+	public int getEvaluationUtility() {
+		return evaluationUtility;
 	}	
 	
+	// xor is its own inverse, so dropping and removing a coin is the same update
 	private void updateBoardHash(int rowIndex, int colIndex, Boardstate player) {
-		boardHash -= ((long) colHashes[colIndex]) << (7 * (numColumns - colIndex));
-		
-		switch (player) {
-		case NOT_DROPPED:
-			switch (board[rowIndex][colIndex]) {
-			case NOT_DROPPED:
-				break;
-			
-			case YELLOW:
-				colHashes[colIndex] -= 2 * POWERS_OF_TWO[numRows - 1 - rowIndex];
-				break;
-				
-			case RED:
-				colHashes[colIndex] -= 1 * POWERS_OF_TWO[numRows - 1 - rowIndex];
-				break;
-			}
-			
-			boardHash += ((long) colHashes[colIndex]) << (7 * (numColumns - colIndex));
-			return;
-			
-		case YELLOW:
-			colHashes[colIndex] += 2 * POWERS_OF_TWO[numRows - 1 - rowIndex];
-			break;
-		
-		case RED:
-			colHashes[colIndex] += 1 * POWERS_OF_TWO[numRows - 1 - rowIndex];
-			break;
+		int mirroredColIndex = getMirroredColumn(colIndex);
+		if (player == Boardstate.YELLOW) {
+			boardHash ^= yellowZobristKeys[rowIndex][colIndex];
+			mirroredBoardHash ^= yellowZobristKeys[rowIndex][mirroredColIndex];
+		} else {
+			boardHash ^= redZobristKeys[rowIndex][colIndex];
+			mirroredBoardHash ^= redZobristKeys[rowIndex][mirroredColIndex];
 		}
-		
-		boardHash += ((long) colHashes[colIndex]) << (7 * (numColumns - colIndex));
 	}
 	
 	public long getBoardHash() {
 		return boardHash;
 	}
+	
+	public long getMirroredBoardHash() {
+		return mirroredBoardHash;
+	}
+	
+	/**
+	 * This function returns the same key for a position and its mirror image, so tables only need to store one of them.
+	 * Moves stored under the key have to be mirrored with getMirroredColumn if isCanonicalHashMirrored returns true.
+	 */
+	public long getCanonicalHash() {
+		return Math.min(boardHash, mirroredBoardHash);
+	}
+	
+	// true if the canonical hash is the hash of the mirrored position
+	public boolean isCanonicalHashMirrored() {
+		return mirroredBoardHash < boardHash;
+	}
+	
+	public int getMirroredColumn(int columnIndex) {
+		return numColumns - 1 - columnIndex;
+	}
 
 	/**
 	 * Switches the current player.
 	 */
 	public void switchPlayer() {
+		// the stones of the other player are all occupied cells that are not ours
+		for (int i = 0; i < numWords; i++) {
+			currentPlayerStones[i] ^= occupiedCells[i];
+		}
+		
 		switch (currentPlayer) {
 		case NOT_DROPPED:
 			break;
@@ -290,24 +408,195 @@ public class Gamelogic {
 		}
 	}
 	
-	private void checkForWinOrDraw() {
-		Object[] checkForWinInfo = checkForWin(board, currentPlayer, numNeedForWin);
-		boolean hasWon = (boolean) checkForWinInfo[0];
-		if (hasWon) {
-			// set game finished
-			gameEndedInWin = true;
-			playerWon = currentPlayer;
-			// set blink animation indices
-			winningRowIndices = (int[]) checkForWinInfo[1];
-			winningColIndices = (int[]) checkForWinInfo[2];
-		} else if (movesPlayed == maxNumOfMoves) { // check for draw
+	private void checkForWinOrDraw(int rowIndex, int columnIndex) {
+		// only lines through the coin that was just dropped can contain a new win,
+		// and there can't be a win before enough moves are played
+		if (movesPlayed >= 2 * numNeedForWin - 1) {
+			for (int line : cellLines[getCellIndex(rowIndex, columnIndex)]) {
+				if (isLineComplete(line)) {
+					// set game finished
+					gameEndedInWin = true;
+					playerWon = currentPlayer;
+					return;
+				}
+			}
+		}
+		
+		// check for draw
+		if (movesPlayed == maxNumOfMoves) {
 			// set game finished
 			gameEndedInDraw = true;
 		}
 	}
 	
+	// true if the current player has a coin on every cell of the line
+	private boolean isLineComplete(int line) {
+		int offset = line * numWords;
+		for (int i = 0; i < numWords; i++) {
+			long mask = lineMasks[offset + i];
+			if ((currentPlayerStones[i] & mask) != mask) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * This function counts the lines in which a coin of the current player dropped into the column would leave
+	 * the player one coin short of a win, with the last cell of the line still empty
+	 * @return the number of threats the move creates, 0 if the move is not possible
+	 */
+	public int countThreats(int columnIndex) {
+		if (isPossibleMove(columnIndex) == false) {
+			return 0;
+		}
+		int rowIndex = rowDropIndices[columnIndex];
+		int bit = getCellBitIndex(rowIndex, columnIndex);
+		
+		// a line is a threat if it holds no coin of the opponent and all but one of its cells are ours after the drop
+		int threats = 0;
+		for (int line : cellLines[getCellIndex(rowIndex, columnIndex)]) {
+			int offset = line * numWords;
+			int ownCoins = 0;
+			boolean blocked = false;
+			for (int i = 0; i < numWords && blocked == false; i++) {
+				long mask = lineMasks[offset + i];
+				long ownStones = currentPlayerStones[i] | ((i == bit / Long.SIZE) ? 1L << bit : 0);
+				ownCoins += Long.bitCount(ownStones & mask);
+				blocked = ((occupiedCells[i] ^ currentPlayerStones[i]) & mask) != 0;
+			}
+			if (blocked == false && ownCoins == numNeedForWin - 1) {
+				threats++;
+			}
+		}
+		return threats;
+	}
+	
+	// the index of the cell in the bitboards, shifting a long by the index only uses its lowest 6 bits
+	private int getCellBitIndex(int rowIndex, int columnIndex) {
+		return columnIndex * bitsPerColumn + numRows - 1 - rowIndex;
+	}
+	
+	private int getCellIndex(int rowIndex, int columnIndex) {
+		return rowIndex * numColumns + columnIndex;
+	}
+	
+	// bitboards of the stones of the player to move and of all stones, only valid if the board fits into one word
+	long getCurrentPlayerStones() {
+		return currentPlayerStones[0];
+	}
+	
+	long getOccupiedCells() {
+		return occupiedCells[0];
+	}
+	
+	// all words of the bitboards and the line tables, for the Playout kernel. The tables are shared and must not be changed.
+	long getCurrentPlayerStones(int word) {
+		return currentPlayerStones[word];
+	}
+	
+	long getOccupiedCells(int word) {
+		return occupiedCells[word];
+	}
+	
+	int getNumOfBitboardWords() {
+		return numWords;
+	}
+	
+	long[] getLineMasks() {
+		return lineMasks;
+	}
+	
+	int[][] getCellLines() {
+		return cellLines;
+	}
+
+	
+	/**
+	 * This function finds the columns in which a coin would complete a line, without dropping any coins
+	 * @param opponent looks for the wins of the player who just moved instead of the player to move
+	 * @return a mask with bit i set if a coin dropped into column i wins, only for boards with at most 64 columns
+	 */
+	public long getWinningColumns(boolean opponent) {
+		long winningColumns = 0;
+		for (int columnIndex = 0; columnIndex < numColumns; columnIndex++) {
+			if (rowDropIndices[columnIndex] >= 0 && isWinningCell(rowDropIndices[columnIndex], columnIndex, opponent)) {
+				winningColumns |= 1L << columnIndex;
+			}
+		}
+		return winningColumns;
+	}
+	
+	/**
+	 * This function finds the moves of the player to move that let the opponent win right after them,
+	 * because the opponent completes a line in the cell on top of the dropped coin
+	 * @return a mask with bit i set if dropping into column i gives the opponent a win there
+	 */
+	public long getColumnsBelowOpponentWins() {
+		long columns = 0;
+		for (int columnIndex = 0; columnIndex < numColumns; columnIndex++) {
+			if (rowDropIndices[columnIndex] >= 1 && isWinningCell(rowDropIndices[columnIndex] - 1, columnIndex, true)) {
+				columns |= 1L << columnIndex;
+			}
+		}
+		return columns;
+	}
+	
+	// true if a coin on the cell completes one of the lines through it, the other coins of the line are already there
+	private boolean isWinningCell(int rowIndex, int columnIndex, boolean opponent) {
+		int bit = getCellBitIndex(rowIndex, columnIndex);
+		int cellWord = bit / Long.SIZE;
+		for (int line : cellLines[getCellIndex(rowIndex, columnIndex)]) {
+			int offset = line * numWords;
+			boolean complete = true;
+			for (int i = 0; i < numWords && complete; i++) {
+				long stones = opponent ? occupiedCells[i] ^ currentPlayerStones[i] : currentPlayerStones[i];
+				if (i == cellWord) {
+					stones |= 1L << bit;
+				}
+				long mask = lineMasks[offset + i];
+				complete = (stones & mask) == mask;
+			}
+			if (complete) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	// a mask with bit i set if a coin can be dropped into column i
+	public long getPossibleColumns() {
+		long possibleColumns = 0;
+		for (int i = 0; i < numColumns; i++) {
+			if (rowDropIndices[i] >= 0) {
+				possibleColumns |= 1L << i;
+			}
+		}
+		return possibleColumns;
+	}
+	
+	/**
+	 * This function draws a column uniformly from the possible moves, without trying impossible ones
+	 * @return the column index, -1 if no move is possible
+	 */
+	public int getRandomMove(RandomGenerator random) {
+		long possibleColumns = getPossibleColumns();
+		if (possibleColumns == 0) {
+			return -1;
+		}
+		// clear the lowest possible columns until the drawn one is the lowest
+		for (int i = random.nextInt(Long.bitCount(possibleColumns)); i > 0; i--) {
+			possibleColumns &= possibleColumns - 1;
+		}
+		return Long.numberOfTrailingZeros(possibleColumns);
+	}
+	
 	public boolean[] getPossibleMoves() {
-		return possibleMoves.clone();
+		boolean[] possibleMoves = new boolean[numColumns];
+		for (int i = 0; i < numColumns; i++) {
+			possibleMoves[i] = rowDropIndices[i] >= 0;
+		}
+		return possibleMoves;
 	}
 	
 	public int getRowDropIndex(int columnIndex) {
@@ -325,114 +614,147 @@ public class Gamelogic {
 		if (columnIndex < 0 || columnIndex >= numColumns) {
 			return false;
 		}
-		return possibleMoves[columnIndex];
+		return rowDropIndices[columnIndex] >= 0;
 	}
 	
 	public boolean isStandardSize() {
 		return isStandardSize;
 	}
 	
-	public static Object[] checkForWin(Boardstate[][] board, Boardstate player, int numNeedForWin) {
+	/**
+	 * Scans the whole board for a win of the given player. The game itself only checks the lines through
+	 * the last move, this full scan is kept to validate positions.
+	 */
+	public static boolean checkForWin(Boardstate[][] board, Boardstate player, int numNeedForWin) {
+		return findWinningCells(board, player, numNeedForWin, null, null);
+	}
+	
+	/**
+	 * Scans the whole board for a win of the given player and writes the cells of the first winning line found
+	 * into the given arrays, which may be null if only the result is needed.
+	 * @return true if the player has won, false otherwise
+	 */
+	public static boolean findWinningCells(Boardstate[][] board, Boardstate player, int numNeedForWin, int[] winningRowIndices, int[] winningColIndices) {
 		int numRows = board.length;
 		int numColumns = board[0].length;
-		int[] winningRowIndices = new int[numNeedForWin];
-		int[] winningColIndices = new int[numNeedForWin];
 
 		// Check for horizontal row
 		for (int rowInd = 0; rowInd < numRows; rowInd++) {
 			outer: for (int colInd = 0; colInd <= numColumns - numNeedForWin; colInd++) {
-				// clear arrays
-				clearWinningIndicesArray(winningRowIndices, winningColIndices, numNeedForWin);
-
 				for (int off = 0; off < numNeedForWin; off++) {
-					int newColInd = colInd + off;
-					if (board[rowInd][newColInd] != player) {
+					if (board[rowInd][colInd + off] != player) {
 						continue outer;
 					}
-
-					winningRowIndices[off] = rowInd;
-					winningColIndices[off] = newColInd;
 				}
-
-				return new Object[] {true, winningRowIndices, winningColIndices};
+				setWinningIndices(winningRowIndices, winningColIndices, numNeedForWin, rowInd, colInd, 0, 1);
+				return true;
 			}
 		}
 
 		// Check for vertical row
 		for (int colInd = 0; colInd < numColumns; colInd++) {
 			outer: for (int rowInd = 0; rowInd <= numRows - numNeedForWin; rowInd++) {
-				// clear arrays
-				clearWinningIndicesArray(winningRowIndices, winningColIndices, numNeedForWin);
-
 				for (int off = 0; off < numNeedForWin; off++) {
-					int newRowInd = rowInd + off;
-					if (board[newRowInd][colInd] != player) {
+					if (board[rowInd + off][colInd] != player) {
 						continue outer;
 					}
-
-					winningRowIndices[off] = newRowInd;
-					winningColIndices[off] = colInd;
 				}
-				return new Object[] {true, winningRowIndices, winningColIndices};
+				setWinningIndices(winningRowIndices, winningColIndices, numNeedForWin, rowInd, colInd, 1, 0);
+				return true;
 			}
 		}
 
 		// Check for diagonal row: down and right
 		for (int colInd = 0; colInd <= numColumns - numNeedForWin; colInd++) {
 			outer: for (int rowInd = 0; rowInd <= numRows - numNeedForWin; rowInd++) {
-				// clear arrays
-				clearWinningIndicesArray(winningRowIndices, winningColIndices, numNeedForWin);
-
 				for (int off = 0; off < numNeedForWin; off++) {
-					int newRowInd = rowInd + off;
-					int newColInd = colInd + off;
-					if (board[newRowInd][newColInd] != player) {
+					if (board[rowInd + off][colInd + off] != player) {
 						continue outer;
 					}
-
-					winningRowIndices[off] = newRowInd;
-					winningColIndices[off] = newColInd;
 				}
-				return new Object[] {true, winningRowIndices, winningColIndices};
+				setWinningIndices(winningRowIndices, winningColIndices, numNeedForWin, rowInd, colInd, 1, 1);
+				return true;
 			}
 		}
 
 		// Check for diagonal row: up and right
 		for (int colInd = 0; colInd <= numColumns - numNeedForWin; colInd++) {
 			outer: for (int rowInd = 0; rowInd <= numRows - numNeedForWin; rowInd++) {
-				// clear arrays
-				clearWinningIndicesArray(winningRowIndices, winningColIndices, numNeedForWin);
-
+				int startRowInd = rowInd + (numNeedForWin - 1);
 				for (int off = 0; off < numNeedForWin; off++) {
-					int newRowInd = rowInd + (numNeedForWin - 1) - off;
-					int newColInd = colInd + off;
-
-					if (board[newRowInd][newColInd] != player) {
+					if (board[startRowInd - off][colInd + off] != player) {
 						continue outer;
 					}
-
-					winningRowIndices[off] = newRowInd;
-					winningColIndices[off] = newColInd;
 				}
-				return new Object[] {true, winningRowIndices, winningColIndices};
+				setWinningIndices(winningRowIndices, winningColIndices, numNeedForWin, startRowInd, colInd, -1, 1);
+				return true;
 			}
 		}
 		
-		return new Object[] {false};
+		return false;
 	}
 
-	private static void clearWinningIndicesArray(int[] winningRowIndices, int[] winningColIndices, int numNeedForWin) {
+	private static void setWinningIndices(int[] winningRowIndices, int[] winningColIndices, int numNeedForWin, int startRowInd, int startColInd, int rowStep, int colStep) {
+		if (winningRowIndices == null || winningColIndices == null) {
+			return;
+		}
 		for (int i = 0; i < numNeedForWin; i++) {
-			winningRowIndices[i] = -1;
-			winningColIndices[i] = -1;
+			winningRowIndices[i] = startRowInd + i * rowStep;
+			winningColIndices[i] = startColInd + i * colStep;
 		}
 	}
 	
+	/**
+	 * Looks up the cells of the winning line through the last move. The search itself only needs to know
+	 * that the game was won, so this is done on demand for the blink animation.
+	 */
+	private void findWinningCellsOfLastMove() {
+		int columnIndex = getLastMove();
+		int rowIndex = rowDropIndices[columnIndex] + 1;
+		
+		for (int i = 0; i < LINE_ROW_STEPS.length; i++) {
+			if (findWinningLine(rowIndex, columnIndex, LINE_ROW_STEPS[i], LINE_COL_STEPS[i])) {
+				return;
+			}
+		}
+	}
+	
+	private boolean findWinningLine(int rowIndex, int columnIndex, int rowStep, int colStep) {
+		// walk backwards to the first coin of the line
+		while (isPlayersCoin(rowIndex - rowStep, columnIndex - colStep, playerWon)) {
+			rowIndex -= rowStep;
+			columnIndex -= colStep;
+		}
+		
+		// the line has to be long enough from there on
+		for (int off = 0; off < numNeedForWin; off++) {
+			if (isPlayersCoin(rowIndex + off * rowStep, columnIndex + off * colStep, playerWon) == false) {
+				return false;
+			}
+		}
+		
+		setWinningIndices(winningRowIndices, winningColIndices, numNeedForWin, rowIndex, columnIndex, rowStep, colStep);
+		return true;
+	}
+	
+	private boolean isPlayersCoin(int rowIndex, int columnIndex, Boardstate player) {
+		if (rowIndex < 0 || rowIndex >= numRows || columnIndex < 0 || columnIndex >= numColumns) {
+			return false;
+		}
+		return board[rowIndex][columnIndex] == player;
+	}
+	
 	public int[] getWinningRowIndices() {
+		if (gameEndedInWin) {
+			findWinningCellsOfLastMove();
+		}
 		return winningRowIndices;
 	}
 
 	public int[] getWinningColIndices() {
+		if (gameEndedInWin) {
+			findWinningCellsOfLastMove();
+		}
 		return winningColIndices;
 	}
 	
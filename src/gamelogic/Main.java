@@ -71,6 +71,7 @@ public class Main extends GameBase {
 	@Override
 	public void update(double tslf) {
 		if (gameSettingsChanged) {
+			game.stopBots();
 			game = new Game(numRows, numColumns, numNeedForWin);
 			window.setTitle(WINDOW_TITLES[numNeedForWin - 1]);
 			gameSettingsChanged = false;
@@ -0,0 +1,128 @@
+package gamelogic;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Monte Carlo tree search bot (UCT). It needs no evaluation function, so it works on every board size and win condition.
+ * Every thread grows its own tree from random playouts, the move visited most often over all trees is played.
+ * The trees are kept between the moves of a game, so the subtree of the new position is reused.
+ */
+public class MctsBot extends Bot {
+
+	public static final int DEFAULT_TREE_CAPACITY = 1 << 20;
+
+	private final int numThreads;
+	private final int treeCapacity;
+	private final long seed;
+	private ExecutorService helperPool;
+
+	private MctsTree[] trees;
+	private volatile boolean searchStopped;
+	private volatile Future<Integer> currentRequest;
+	private long playouts;
+	private long searchNanos;
+
+	public MctsBot() {
+		this(Runtime.getRuntime().availableProcessors(), DEFAULT_TREE_CAPACITY, System.nanoTime());
+	}
+
+	public MctsBot(int numThreads, int treeCapacity, long seed) {
+		this.numThreads = Math.max(1, numThreads);
+		this.treeCapacity = treeCapacity;
+		this.seed = seed;
+	}
+
+	@Override
+	protected synchronized int computeMove(Gamelogic position, long budgetMillis, Future<Integer> request) {
+		long startTime = System.nanoTime();
+		long deadline = System.currentTimeMillis() + budgetMillis;
+		searchStopped = false;
+		currentRequest = request;
+		createTrees(position);
+		for (MctsTree tree : trees) {
+			tree.setPosition(position);
+		}
+
+		// root parallelization: the helpers grow their own trees
+		List<Future<?>> helperResults = new ArrayList<>();
+		for (int i = 1; i < numThreads; i++) {
+			MctsTree tree = trees[i];
+			helperResults.add(getHelperPool().submit(() -> tree.search(deadline, this)));
+		}
+
+		// the requesting thread grows the first tree
+		trees[0].search(deadline, this);
+		searchStopped = true;
+		for (Future<?> helperResult : helperResults) {
+			try {
+				helperResult.get();
+			} catch (InterruptedException | ExecutionException e) {
+				e.printStackTrace();
+			}
+		}
+
+		// the move that was visited most often over all trees
+		long[] columnVisits = new long[position.getNumOfColumns()];
+		playouts = 0;
+		for (MctsTree tree : trees) {
+			tree.addRootVisits(columnVisits);
+			playouts += tree.getPlayouts();
+		}
+		searchNanos = System.nanoTime() - startTime;
+		int bestMove = -1;
+		for (int columnIndex = 0; columnIndex < columnVisits.length; columnIndex++) {
+			if (position.isPossibleMove(columnIndex) && (bestMove == -1 || columnVisits[columnIndex] > columnVisits[bestMove])) {
+				bestMove = columnIndex;
+			}
+		}
+		return bestMove;
+	}
+
+	// the trees hold a copy of the position, so they are created again if the board changes
+	private void createTrees(Gamelogic position) {
+		if (trees != null && trees[0].isForBoard(position)) {
+			return;
+		}
+		trees = new MctsTree[numThreads];
+		for (int i = 0; i < numThreads; i++) {
+			Gamelogic treePosition = new Gamelogic(position.getNumOfRows(), position.getNumOfColumns(), position.getNumNeedForWin());
+			treePosition.initNewGame();
+			trees[i] = new MctsTree(treePosition, treeCapacity, seed + i);
+		}
+	}
+
+	private ExecutorService getHelperPool() {
+		if (helperPool == null) {
+			helperPool = Executors.newCachedThreadPool(runnable -> {
+				Thread thread = new Thread(runnable, "mcts-helper");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+		return helperPool;
+	}
+
+	boolean isSearchStopped() {
+		return searchStopped || currentRequest.isCancelled();
+	}
+
+	// the number of playouts of the last search, over all threads
+	public long getPlayouts() {
+		return playouts;
+	}
+
+	// the playouts per second of one search thread in the last search
+	public long getPlayoutsPerSecondPerThread() {
+		// in double, since the playouts times a billion overflow a long
+		return (long) (playouts * 1e9 / Math.max(1, searchNanos) / numThreads);
+	}
+
+	public int getNumThreads() {
+		return numThreads;
+	}
+}
@@ -0,0 +1,215 @@
+package gamelogic;
+
+import java.util.SplittableRandom;
+
+import gamelogic.Gamelogic.Boardstate;
+
+/**
+ * Search tree of one MctsBot thread. The nodes are stored as a struct of arrays: node i is described by
+ * the i-th entry of every array, and the children of a node are stored next to each other.
+ * With several threads every thread grows its own tree (root parallelization), the bot adds up the root statistics.
+ */
+public class MctsTree {
+
+	// exploration constant of the UCT formula
+	private static final double EXPLORATION = Math.sqrt(2);
+	private static final int PLAYOUTS_BETWEEN_TIME_CHECKS = 64;
+	// a win counts 2 points and a draw 1 point, so scores stay integers
+	private static final int WIN_POINTS = 2;
+	private static final int DRAW_POINTS = 1;
+
+	// nodes
+	private final int capacity;
+	private final int[] visits;
+	// points of the player who made the move into the node
+	private final int[] points;
+	private final int[] firstChild;
+	private final byte[] numChildren;
+	private final byte[] move;
+	private int numNodes;
+
+	// the position at the root, used to reuse the tree for later positions of the same game
+	private int root = -1;
+	private int[] rootMoveHistory;
+	private int rootMovesPlayed;
+
+	private final Gamelogic position;
+	private final SplittableRandom random;
+	private final int[] path;
+	private final Playout playout;
+	private long playouts;
+
+	public MctsTree(Gamelogic position, int capacity, long seed) {
+		this.position = position;
+		this.capacity = capacity;
+		this.visits = new int[capacity];
+		this.points = new int[capacity];
+		this.firstChild = new int[capacity];
+		this.numChildren = new byte[capacity];
+		this.move = new byte[capacity];
+		this.random = new SplittableRandom(seed);
+		this.path = new int[position.getNumOfRows() * position.getNumOfColumns() + 1];
+		this.playout = new Playout(position);
+	}
+
+	/**
+	 * This function sets the position to search. If the position follows the previous root in the same game,
+	 * the subtree of the position is kept, otherwise the tree starts from scratch.
+	 */
+	public void setPosition(Gamelogic newPosition) {
+		int[] moveHistory = newPosition.getMoveHistory();
+		int movesPlayed = newPosition.getNumOfMovesPlayed();
+
+		// a full tree can't grow anymore -> start from scratch
+		boolean reuse = root != -1 && movesPlayed >= rootMovesPlayed && numNodes < capacity - position.getNumOfColumns();
+		for (int i = 0; reuse && i < rootMovesPlayed; i++) {
+			reuse = moveHistory[i] == rootMoveHistory[i];
+		}
+		for (int i = rootMovesPlayed; reuse && i < movesPlayed; i++) {
+			root = findChild(root, moveHistory[i]);
+			reuse = root != -1;
+		}
+		if (reuse == false) {
+			numNodes = 0;
+			root = createNode(-1);
+		}
+
+		// bring the own copy of the position to the new root
+		while (position.getNumOfMovesPlayed() > 0) {
+			position.undoLastMove();
+		}
+		for (int i = 0; i < movesPlayed; i++) {
+			position.doMove(moveHistory[i]);
+		}
+		rootMoveHistory = moveHistory;
+		rootMovesPlayed = movesPlayed;
+		playouts = 0;
+	}
+
+	public boolean isForBoard(Gamelogic otherPosition) {
+		return position.getNumOfRows() == otherPosition.getNumOfRows() && position.getNumOfColumns() == otherPosition.getNumOfColumns()
+				&& position.getNumNeedForWin() == otherPosition.getNumNeedForWin();
+	}
+
+	private int createNode(int columnIndex) {
+		int node = numNodes++;
+		visits[node] = 0;
+		points[node] = 0;
+		firstChild[node] = -1;
+		numChildren[node] = 0;
+		move[node] = (byte) columnIndex;
+		return node;
+	}
+
+	private int findChild(int node, int columnIndex) {
+		for (int child = firstChild[node]; child != -1 && child < firstChild[node] + numChildren[node]; child++) {
+			if (move[child] == columnIndex) {
+				return child;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * This function runs playouts until the deadline or until the bot stops the search, the root has to be set before
+	 */
+	public void search(long deadline, MctsBot bot) {
+		while (bot.isSearchStopped() == false) {
+			if (playouts % PLAYOUTS_BETWEEN_TIME_CHECKS == 0 && System.currentTimeMillis() >= deadline) {
+				break;
+			}
+			runIteration();
+			playouts++;
+		}
+	}
+
+	// selection, expansion, playout and backpropagation
+	private void runIteration() {
+		Boardstate rootPlayer = position.getCurrentPlayer();
+		int node = root;
+		int pathLength = 0;
+		path[pathLength++] = node;
+
+		// selection: follow the best children down to a leaf
+		while (numChildren[node] > 0 && position.didGameEnd() == false) {
+			node = selectChild(node);
+			position.doMove(move[node]);
+			path[pathLength++] = node;
+		}
+
+		// expansion: a leaf gets its children on its second visit
+		if (position.didGameEnd() == false && visits[node] > 0 && numNodes + position.getNumOfColumns() <= capacity) {
+			expand(node);
+			node = firstChild[node] + random.nextInt(numChildren[node]);
+			position.doMove(move[node]);
+			path[pathLength++] = node;
+		}
+
+		// playout: random moves until the game ends, on a copy of the position
+		playout.reset(position);
+		Boardstate winner = playout.play(random);
+
+		// backpropagation, the points of a node belong to the player who made the move into it
+		for (int i = 0; i < pathLength; i++) {
+			int pathNode = path[i];
+			visits[pathNode]++;
+			if (winner == Boardstate.NOT_DROPPED) {
+				points[pathNode] += DRAW_POINTS;
+			} else if ((winner == rootPlayer) == (i % 2 == 1)) {
+				points[pathNode] += WIN_POINTS;
+			}
+		}
+
+		for (int i = 1; i < pathLength; i++) {
+			position.undoLastMove();
+		}
+	}
+
+	// uct: average result plus a bonus for children that were visited rarely
+	private int selectChild(int node) {
+		double logVisits = Math.log(visits[node]);
+		int bestChild = -1;
+		double bestValue = Double.NEGATIVE_INFINITY;
+		int lastChild = firstChild[node] + numChildren[node];
+		for (int child = firstChild[node]; child < lastChild; child++) {
+			if (visits[child] == 0) {
+				return child;
+			}
+			double value = (double) points[child] / (WIN_POINTS * visits[child])
+					+ EXPLORATION * Math.sqrt(logVisits / visits[child]);
+			if (value > bestValue) {
+				bestValue = value;
+				bestChild = child;
+			}
+		}
+		return bestChild;
+	}
+
+	private void expand(int node) {
+		firstChild[node] = numNodes;
+		for (int columnIndex = 0; columnIndex < position.getNumOfColumns(); columnIndex++) {
+			if (position.isPossibleMove(columnIndex)) {
+				createNode(columnIndex);
+				numChildren[node]++;
+			}
+		}
+	}
+
+	/**
+	 * This function adds the visits of the moves at the root to the given array, indexed by column
+	 */
+	public void addRootVisits(long[] columnVisits) {
+		int lastChild = firstChild[root] + numChildren[root];
+		for (int child = firstChild[root]; child >= 0 && child < lastChild; child++) {
+			columnVisits[move[child]] += visits[child];
+		}
+	}
+
+	public long getPlayouts() {
+		return playouts;
+	}
+
+	public int getNumOfNodes() {
+		return numNodes;
+	}
+}
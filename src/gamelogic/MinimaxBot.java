@@ -1,190 +1,365 @@
 package gamelogic;
 
-import java.util.HashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
-import gamelogic.Gamelogic.Boardstate;
+import gamelogic.TranspositionTable.ReplacementPolicy;
 
-public class MinimaxBot extends Bot implements Runnable {
-
-	private final int maxDepth = 11;
-	private int bestMove;
-	private boolean nextMoveReady;
+public class MinimaxBot extends Bot {
+	
+	// iterative deepening: search one ply deeper each time until the budget runs out
+	public static final long DEFAULT_TIME_BUDGET_MILLIS = 1000;
+	private int maxDepth = Integer.MAX_VALUE;
+	private long timeBudgetMillis = DEFAULT_TIME_BUDGET_MILLIS;
+	private long nodeBudget = Long.MAX_VALUE;
+	private volatile long deadline;
+	private volatile boolean searchStopped;
+	
+	// statistics of the last search for a move, null if the last move was not searched
+	private SearchStatistics statistics;
+	
+	// move ordering heuristics besides the transposition table move and the center-first order,
+	// killer moves are off since adding them to the history and threats searches more nodes than history and threats alone
+	private boolean useKillerMoves;
+	private boolean useHistory = true;
+	private boolean useThreats = true;
+	
+	// pondering: search the position of the opponent while it thinks, the results stay in the transposition table
+	private boolean pondering;
+	private volatile CompletableFuture<Void> ponderRequest;
+	
+	// lazy smp: number of threads searching the same position
+	private int numThreads = 1;
+	private ExecutorService helperPool;
 	
-	private Gamelogic gamelogic;
+	// the searches of the threads are kept between moves, they only change with the board or the number of threads
+	private MinimaxSearch[] searches;
+	private Future<?>[] helperResults;
 	
-	// multithreading 
-	private volatile Thread minimaxThread;
+	// only one search runs at a time, it stops early if its request is cancelled
+	private final Object searchLock = new Object();
+	private volatile Future<?> currentRequest;
 	
-	// moves in the middle of the board are more likely to be good -> search them first
-	private static final int[] STANDARD_SEARCH_ORDER = new int[] {3, 2, 4, 1, 5, 0, 6};
+	private int bestMove;
 	
 	// transposition table -> look up moves that have already been calculated
-	private HashMap<Long, Integer> transpositionTable;
+	public static final int DEFAULT_TABLE_SIZE_MB = 64;
+	private final TranspositionTable transpositionTable;
+	
+	// strongest level: positions on the standard board are solved perfectly if the solver finishes in time
+	private Solver solver;
+	
+	// opening moves are looked up instead of searched
+	private OpeningBook openingBook;
+	
+	static {
+		// loading the flight recorder classes takes a noticeable time, which should not count against the first move
+		new SearchEvent();
+	}
+	
+	public MinimaxBot() {
+		this(DEFAULT_TABLE_SIZE_MB, ReplacementPolicy.DEPTH_PREFERRED);
+	}
 	
-	public MinimaxBot(Gamelogic gamelogic) {
-		this.gamelogic = gamelogic;
-		transpositionTable = new HashMap<Long, Integer>();
+	public MinimaxBot(int tableSizeMB, ReplacementPolicy replacementPolicy) {
+		transpositionTable = new TranspositionTable(tableSizeMB, replacementPolicy);
 	}
 	
+	@Override
 	public void initNewGame() {
-		nextMoveReady = false;
+		stopPondering();
+		// wait for a running search, it would write entries of the old game into the table while it is cleared
+		synchronized (searchLock) {
+			transpositionTable.clear();
+		}
 	}
 	
-	public int minimax(Gamelogic position, int depth, int alpha, int beta, boolean maximizingPlayer) {
-		if (depth == 0 || position.didGameEnd()) {
-			return evaluatePosition(position);
+	/**
+	 * This function searches the position with increasing depth until the time or node budget is used up.
+	 * With more than one thread, helper threads search the same position and share the transposition table.
+	 * @return the evaluation of the deepest completed search from the view of the player to move, the best move is stored in bestMove
+	 */
+	public int iterativeDeepening(Gamelogic position) {
+		synchronized (searchLock) {
+			currentRequest = null;
+			return iterativeDeepening(position, timeBudgetMillis, false);
 		}
-
-		if (maximizingPlayer) {
-			int maxEval = Integer.MIN_VALUE;
-			for (int columnIndex : STANDARD_SEARCH_ORDER) {
-				// is valid move?
-				if (position.doMove(columnIndex) == false) {
-					continue;
-				}
-				int eval = minimax(position, depth-1, alpha, beta, false);
-				position.undoLastMove();
-//				maxEval = Math.max(maxEval, eval);			
-				if (eval > maxEval) {
-					maxEval = eval;
-					if (depth == maxDepth) {
-						bestMove = columnIndex;
-					}
-				}
-				alpha = Math.max(alpha, eval);
-				if (beta <= alpha) {
-					break;
-				}
-			}
-			return maxEval;
-		} else {
-			int minEval = Integer.MAX_VALUE;
-			for (int columnIndex : STANDARD_SEARCH_ORDER) {
-				// is valid move?
-				if (position.doMove(columnIndex) == false) {
-					continue;
-				}
-				int eval = minimax(position, depth-1, alpha, beta, true);
-				position.undoLastMove();
-				minEval = Math.min(minEval, eval);
-				beta = Math.min(beta, eval);
+	}
+	
+	private int iterativeDeepening(Gamelogic position, long timeBudgetMillis, boolean pondering) {
+		long startTime = System.nanoTime();
+		searchStopped = false;
+		deadline = System.currentTimeMillis() + timeBudgetMillis;
+		SearchEvent event = new SearchEvent();
+		event.begin();
+		
+		createSearches(position);
+		for (int threadIndex = 1; threadIndex < numThreads; threadIndex++) {
+			MinimaxSearch helper = searches[threadIndex];
+			helperResults[threadIndex] = getHelperPool().submit(() -> helper.iterativeDeepening(position));
+		}
+		
+		MinimaxSearch mainSearch = searches[0];
+		int bestEval = mainSearch.iterativeDeepening(position);
+		
+		// stop the helpers and wait until they stopped writing into the transposition table
+		stopSearch();
+		for (int threadIndex = 1; threadIndex < numThreads; threadIndex++) {
+			try {
+				helperResults[threadIndex].get();
+			} catch (InterruptedException | ExecutionException e) {
+				e.printStackTrace();
 			}
-			return minEval;
 		}
+		
+		SearchStatistics searchStatistics = new SearchStatistics(pondering, position.getNumOfColumns());
+		for (MinimaxSearch search : searches) {
+			searchStatistics.addThread(search);
+		}
+		searchStatistics.finish(mainSearch.getBestMove(), bestEval, mainSearch.getDepthReached(), System.nanoTime() - startTime);
+		
+		// report the search to the metrics registry and the flight recorder
+		SearchMetrics.record(searchStatistics);
+		event.end();
+		if (event.shouldCommit()) {
+			event.set(searchStatistics);
+			event.commit();
+		}
+		
+		if (pondering == false) {
+			bestMove = mainSearch.getBestMove();
+			statistics = searchStatistics;
+		}
+		return bestEval;
 	}
 	
-	//here is where the evaluation is called
-	public int evaluatePosition(Gamelogic position) {
-		long hash = position.getBoardHash();
-		if (transpositionTable.containsKey(hash)) {
-			return transpositionTable.get(hash);
+	private void createSearches(Gamelogic position) {
+		if (searches != null && searches.length == numThreads && searches[0].isForBoard(position)) {
+			return;
 		}
-		
-		if (position.didPlayerWin(Boardstate.YELLOW)) {
-			transpositionTable.put(hash, Integer.MAX_VALUE);
-			return Integer.MAX_VALUE;
-		} else if (position.didPlayerWin(Boardstate.RED)) {
-			transpositionTable.put(hash, Integer.MIN_VALUE);
-			return Integer.MIN_VALUE;
-		} else if (position.didGameEndInDraw()) {
-			transpositionTable.put(hash, 0);
-			return 0;
+		searches = new MinimaxSearch[numThreads];
+		for (int threadIndex = 0; threadIndex < numThreads; threadIndex++) {
+			searches[threadIndex] = new MinimaxSearch(this, position, threadIndex);
 		}
-
-		transpositionTable.put(hash, position.getBoardEvaluation());
-		return position.getBoardEvaluation();
+		helperResults = new Future<?>[numThreads];
 	}
 	
-	@Override
-	public int getNextMove(Gamelogic position) {
-		if (nextMoveReady == false) {
-			return -1;
+	private ExecutorService getHelperPool() {
+		if (helperPool == null) {
+			helperPool = Executors.newCachedThreadPool(runnable -> {
+				Thread thread = new Thread(runnable, "minimax-helper");
+				thread.setDaemon(true);
+				return thread;
+			});
 		}
-		nextMoveReady = false;
-		return bestMove;
+		return helperPool;
 	}
 	
-	@Override
-	public boolean isNextMoveReady() {
-		return nextMoveReady;
+	void stopSearch() {
+		searchStopped = true;
 	}
 	
-	public void start() {
-		minimaxThread = new Thread(this);
-		minimaxThread.start();
-		nextMoveReady = false;
+	boolean isSearchStopped() {
+		return searchStopped || isRequestCancelled();
 	}
 	
-	public void stop() {
-		minimaxThread = null;
+	private boolean isRequestCancelled() {
+		Future<?> request = currentRequest;
+		return request != null && request.isCancelled();
 	}
 	
-	private int searchKillerMoves(Gamelogic position, Boardstate player) {
-		for (int columnIndex = 0; columnIndex < gamelogic.getNumOfColumns(); columnIndex++) {
-			// is valid move?
-			if (position.doMove(columnIndex) == false) {
-				continue;
-			}
-			if (position.didPlayerWin(player)) {
-				position.undoLastMove();
-				return columnIndex;
-			}
-			position.undoLastMove();
-		}
-		return -1;
+	long getDeadline() {
+		return deadline;
+	}
+	
+	long getNodeBudget() {
+		return nodeBudget;
+	}
+	
+	int getMaxDepth() {
+		return maxDepth;
+	}
+	
+	TranspositionTable getTranspositionTable() {
+		return transpositionTable;
 	}
 	
 	@Override
-	public void run() {
-		Thread thisThread = Thread.currentThread();
-		while (minimaxThread == thisThread) {
-			// early exit: current move is not the computers move
-			if (gamelogic.getCurrentPlayer() == Boardstate.RED || nextMoveReady) {
-				try {
-					Thread.sleep(100);
-				} catch (InterruptedException e) {
-					e.printStackTrace();
+	protected int computeMove(Gamelogic position, long budgetMillis, Future<Integer> request) {
+		// a new request ends the search of the previous position
+		stopPondering();
+		
+		int move;
+		synchronized (searchLock) {
+			currentRequest = request;
+			move = searchMove(position, budgetMillis);
+			currentRequest = null;
+		}
+		
+		if (pondering && request.isCancelled() == false && move != -1) {
+			position.doMove(move);
+			startPondering(position);
+		}
+		return move;
+	}
+	
+	/**
+	 * This function starts searching the position of the opponent in the background until the next request.
+	 * The transposition table then already holds the replies to the likely moves of the opponent,
+	 * and the next search only has to go deeper.
+	 */
+	private void startPondering(Gamelogic position) {
+		if (position.didGameEnd()) {
+			return;
+		}
+		CompletableFuture<Void> request = new CompletableFuture<>();
+		ponderRequest = request;
+		getExecutor().execute(() -> {
+			synchronized (searchLock) {
+				// pondering that was stopped before it started
+				if (request.isDone()) {
+					return;
 				}
-				continue;
+				currentRequest = request;
+				iterativeDeepening(position, Long.MAX_VALUE / 2, true);
+				currentRequest = null;
 			}
-
-			// search best move with minimax, minimax function updates bestMove
-			bestMove = -1;
-			long startTime = System.currentTimeMillis();
-			Gamelogic position = new Gamelogic(gamelogic);
-			
-			// search instantly winning moves for yellow
-			bestMove = searchKillerMoves(position, Boardstate.YELLOW);
-			if (bestMove != -1) {
-				nextMoveReady = true;
-				continue;
-			}
-			
-			// search instantly winning moves for red
-			position.switchPlayer();
-			bestMove = searchKillerMoves(position, Boardstate.RED);
-			position.switchPlayer();
-			if (bestMove != -1) {
-				nextMoveReady = true;
-				continue;
+			request.complete(null);
+		});
+	}
+	
+	// move requests are stopped by cancelling their futures, pondering is stopped here
+	public void stopPondering() {
+		CompletableFuture<Void> request = ponderRequest;
+		if (request != null) {
+			request.cancel(false);
+		}
+	}
+	
+	private int searchMove(Gamelogic position, long budgetMillis) {
+		long startTime = System.currentTimeMillis();
+		statistics = null;
+		
+		// search instantly winning moves
+		long winningMoves = position.getWinningColumns(false);
+		if (winningMoves != 0) {
+			return Long.numberOfTrailingZeros(winningMoves);
+		}
+		
+		// search instantly winning moves of the opponent
+		winningMoves = position.getWinningColumns(true);
+		if (winningMoves != 0) {
+			return Long.numberOfTrailingZeros(winningMoves);
+		}
+		
+		// look the position up in the opening book
+		int move;
+		if (openingBook != null) {
+			move = openingBook.findMove(position);
+			if (move != -1) {
+				return move;
 			}
-			
-			// otherwise search with minimax
-			int maxEval = minimax(position, maxDepth, Integer.MIN_VALUE, Integer.MAX_VALUE, true);
-			long endTime = System.currentTimeMillis();
-			
-			System.out.println(" minmax found best move: " + bestMove);
-			System.out.println("  with evaluation score: " + maxEval);
-			System.out.println("            time needed: " + (endTime - startTime) + "ms");
-			gamelogic.printBoard();
-			
-			// if minimax found that it will loose anyway, just pick the move with the best score for itself
-			if (maxEval == Integer.MIN_VALUE) {
-				System.out.println("minimax ran into a trap...");
-				bestMove = getPossibleRandomMove(gamelogic);
+		}
+		
+		// try to solve the position, the solver gets half of the time budget
+		if (solver != null && Solver.canSolve(position)) {
+			solver.setTimeBudget(budgetMillis / 2);
+			move = solver.findBestMove(position);
+			if (move != -1) {
+				return move;
 			}
-
-			nextMoveReady = true;
 		}
+		
+		// otherwise search with minimax in the rest of the budget
+		long remainingMillis = budgetMillis - (System.currentTimeMillis() - startTime);
+		int maxEval = iterativeDeepening(position, Math.max(remainingMillis, 0), false);
+		
+		// a lost position is scored by the number of moves until the loss, so the best move is the longest defence
+		if (MinimaxSearch.isLoss(maxEval)) {
+			statistics.markTrapped();
+		}
+		// no search finished within the budget
+		if (bestMove == -1) {
+			return getPossibleRandomMove(position);
+		}
+		return bestMove;
+	}
+	
+	public void setMaxDepth(int maxDepth) {
+		this.maxDepth = maxDepth;
+	}
+	
+	public void setTimeBudget(long timeBudgetMillis) {
+		this.timeBudgetMillis = timeBudgetMillis;
+	}
+	
+	// the node budget counts the nodes of the main search thread
+	public void setNodeBudget(long nodeBudget) {
+		this.nodeBudget = nodeBudget;
+	}
+	
+	public void setNumThreads(int numThreads) {
+		this.numThreads = Math.max(1, numThreads);
+	}
+	
+	public int getNumThreads() {
+		return numThreads;
+	}
+	
+	public void setUseSolver(boolean useSolver) {
+		if (useSolver && solver == null) {
+			solver = new Solver();
+			solver.setStopCondition(this::isRequestCancelled);
+		} else if (useSolver == false) {
+			solver = null;
+		}
+	}
+	
+	public void setPondering(boolean pondering) {
+		this.pondering = pondering;
+		if (pondering == false) {
+			stopPondering();
+		}
+	}
+	
+	public void setOpeningBook(OpeningBook openingBook) {
+		this.openingBook = openingBook;
+	}
+	
+	public void setMoveOrdering(boolean useKillerMoves, boolean useHistory, boolean useThreats) {
+		this.useKillerMoves = useKillerMoves;
+		this.useHistory = useHistory;
+		this.useThreats = useThreats;
+	}
+	
+	boolean isUsingKillerMoves() {
+		return useKillerMoves;
+	}
+	
+	boolean isUsingHistory() {
+		return useHistory;
+	}
+	
+	boolean isUsingThreats() {
+		return useThreats;
+	}
+	
+	public SearchStatistics getStatistics() {
+		return statistics;
+	}
+	
+	public long getNodesVisited() {
+		return (statistics != null) ? statistics.getNodesVisited() : 0;
+	}
+	
+	public int getDepthReached() {
+		return (statistics != null) ? statistics.getDepthReached() : 0;
+	}
+	
+	public int getBestMove() {
+		return bestMove;
 	}
 }
@@ -0,0 +1,424 @@
+package gamelogic;
+
+import java.util.Arrays;
+
+import gamelogic.Gamelogic.Boardstate;
+
+/**
+ * One negamax search thread of the MinimaxBot. With several threads (lazy smp) every thread searches the same
+ * position on its own copy of the board, and the threads share their results through the transposition table.
+ * The bot keeps its searches between moves, every search resets the tables instead of allocating new ones.
+ */
+public class MinimaxSearch {
+
+	private static final int NODES_BETWEEN_TIME_CHECKS = 1024;
+
+	// scores: a win is worth WIN_SCORE minus the number of moves played, everything else is far below
+	public static final int WIN_SCORE = 1_000_000;
+	private static final int MAX_NUM_OF_MOVES = 1000;
+	private static final int INFINITY = WIN_SCORE + 1;
+	private static final int ASPIRATION_WINDOW = 25;
+
+	// move ordering: the move from the transposition table, then the killer moves of the ply,
+	// then moves that create threats and moves that often caused cutoffs (history), ties in center-first order
+	private static final int TT_MOVE_SCORE = Integer.MAX_VALUE;
+	private static final int KILLER_MOVE_SCORE = Integer.MAX_VALUE - 2;
+	private static final int THREAT_SCORE = 1 << 22;
+	private static final int MAX_HISTORY_SCORE = 1 << 21;
+	// counting threats is too expensive right above the leaves
+	private static final int MIN_THREAT_ORDERING_DEPTH = 3;
+
+	private final MinimaxBot bot;
+	private final TranspositionTable transpositionTable;
+	private final boolean isMainThread;
+	private final int firstDepth;
+	private final int numRows;
+	private final int numColumns;
+	// the position of the current search, taken from the search context of the thread
+	private SearchContext context;
+	private Gamelogic position;
+
+	// move ordering tables, indexed by the distance from the root (ply)
+	private final int[] centerOrder;
+	private final int[][] killerMoves;
+	private final int[][] history;
+	private boolean useKillerMoves;
+	private boolean useHistory;
+	private boolean useThreats;
+
+	// statistics
+	private long nodesVisited;
+	private long ttProbes;
+	private long ttHits;
+	private long ttReplacements;
+	private final long[] betaCutoffs;
+	private boolean searchAborted;
+	private int rootDepth;
+	private int rootBestMove;
+
+	private int bestMove;
+	private int bestEval;
+	private int depthReached;
+
+	public MinimaxSearch(MinimaxBot bot, Gamelogic position, int threadIndex) {
+		this.bot = bot;
+		this.transpositionTable = bot.getTranspositionTable();
+		this.isMainThread = threadIndex == 0;
+		// every other helper thread starts one ply deeper, so the threads don't all search the same depth at the same time
+		this.firstDepth = 1 + threadIndex % 2;
+
+		this.numRows = position.getNumOfRows();
+		this.numColumns = position.getNumOfColumns();
+		int numCells = numRows * numColumns;
+		this.centerOrder = createCenterOrder(numColumns);
+		this.killerMoves = new int[numCells + 1][2];
+		this.history = new int[Boardstate.values().length][numCells];
+		this.betaCutoffs = new long[numColumns];
+	}
+
+	// the tables of the search fit every position with the same number of rows and columns
+	public boolean isForBoard(Gamelogic position) {
+		return position.getNumOfRows() == numRows && position.getNumOfColumns() == numColumns;
+	}
+
+	// clear the results of the previous search
+	private void reset(Gamelogic root) {
+		context = SearchContext.forCurrentThread(root);
+		position = context.getPosition();
+		for (int[] killers : killerMoves) {
+			Arrays.fill(killers, -1);
+		}
+		for (int[] playerHistory : history) {
+			Arrays.fill(playerHistory, 0);
+		}
+		Arrays.fill(betaCutoffs, 0);
+		nodesVisited = 0;
+		ttProbes = 0;
+		ttHits = 0;
+		ttReplacements = 0;
+		searchAborted = false;
+		useKillerMoves = bot.isUsingKillerMoves();
+		useHistory = bot.isUsingHistory();
+		useThreats = bot.isUsingThreats();
+	}
+
+	// moves in the middle of the board are more likely to be good -> search them first
+	private static int[] createCenterOrder(int numColumns) {
+		int[] centerOrder = new int[numColumns];
+		int center = (numColumns - 1) / 2;
+		for (int i = 0; i < numColumns; i++) {
+			// center, then alternating left and right of it
+			int offset = (i + 1) / 2;
+			centerOrder[i] = (i % 2 == 1) == (numColumns % 2 == 1) ? center - offset : center + offset;
+		}
+		return centerOrder;
+	}
+
+	/**
+	 * This function searches the position with increasing depth until the search budget is used up or the bot stops the search.
+	 * From the second iteration on, the search starts with a small window around the previous evaluation.
+	 * The root is not changed, the search runs on the copy in the search context of the calling thread.
+	 * @return the evaluation of the deepest completed search, from the view of the player to move
+	 */
+	public int iterativeDeepening(Gamelogic root) {
+		reset(root);
+		int numEmptyCells = position.getNumOfRows() * position.getNumOfColumns() - position.getNumOfMovesPlayed();
+		int maxSearchDepth = Math.min(bot.getMaxDepth(), numEmptyCells);
+		bestEval = -INFINITY;
+		bestMove = -1;
+		depthReached = 0;
+
+		for (int depth = firstDepth; depth <= maxSearchDepth; depth++) {
+			rootDepth = depth;
+			int eval = aspirationSearch(depth);
+
+			// results of an unfinished search are not reliable
+			if (searchAborted) {
+				break;
+			}
+			bestMove = rootBestMove;
+			bestEval = eval;
+			depthReached = depth;
+
+			// a forced win or loss won't change in deeper searches
+			if (isWinOrLoss(eval)) {
+				break;
+			}
+		}
+		return bestEval;
+	}
+
+	private int aspirationSearch(int depth) {
+		int alpha = -INFINITY;
+		int beta = INFINITY;
+		if (depthReached > 0 && isWinOrLoss(bestEval) == false) {
+			alpha = bestEval - ASPIRATION_WINDOW;
+			beta = bestEval + ASPIRATION_WINDOW;
+		}
+
+		while (true) {
+			rootBestMove = -1;
+			int eval = negamax(depth, alpha, beta);
+			if (searchAborted) {
+				return eval;
+			}
+
+			// the evaluation fell outside of the window -> search again with that side of the window opened
+			if (eval <= alpha && alpha > -INFINITY) {
+				alpha = -INFINITY;
+			} else if (eval >= beta && beta < INFINITY) {
+				beta = INFINITY;
+			} else {
+				return eval;
+			}
+		}
+	}
+
+	private boolean isOutOfBudget() {
+		if (bot.isSearchStopped()) {
+			searchAborted = true;
+		} else if (isMainThread) {
+			// only the main thread watches the budget, the helpers stop together with it
+			if (nodesVisited >= bot.getNodeBudget()
+					|| (nodesVisited % NODES_BETWEEN_TIME_CHECKS == 0 && System.currentTimeMillis() >= bot.getDeadline())) {
+				searchAborted = true;
+				bot.stopSearch();
+			}
+		}
+		return searchAborted;
+	}
+
+	/**
+	 * Negamax with principal variation search: the first move is searched with the full window, all other moves
+	 * only have to prove that they are not better, which is done with a null window and searched again if they are.
+	 * @return the evaluation from the view of the player to move
+	 */
+	private int negamax(int depth, int alpha, int beta) {
+		// the main thread always completes the first iteration, so there is a move to play
+		nodesVisited++;
+		if ((rootDepth > 1 || isMainThread == false) && isOutOfBudget()) {
+			return 0;
+		}
+
+		if (depth == 0 || position.didGameEnd()) {
+			return evaluatePosition(position);
+		}
+
+		int originalAlpha = alpha;
+		int originalBeta = beta;
+
+		// look up results of earlier searches of this position or its mirror image
+		long hash = position.getCanonicalHash();
+		boolean isMirrored = position.isCanonicalHashMirrored();
+		int ttMove = -1;
+		long entry = transpositionTable.probe(hash);
+		ttProbes++;
+		if (entry != TranspositionTable.NO_ENTRY) {
+			ttHits++;
+			ttMove = TranspositionTable.getBestMove(entry);
+			if (isMirrored && ttMove != -1) {
+				ttMove = position.getMirroredColumn(ttMove);
+			}
+
+			// the root has to be searched to find the best move
+			if (TranspositionTable.getDepth(entry) >= depth && depth != rootDepth) {
+				int value = TranspositionTable.getValue(entry);
+				switch (TranspositionTable.getBound(entry)) {
+				case TranspositionTable.EXACT:
+					return value;
+
+				case TranspositionTable.LOWER_BOUND:
+					alpha = Math.max(alpha, value);
+					break;
+
+				case TranspositionTable.UPPER_BOUND:
+					beta = Math.min(beta, value);
+					break;
+				}
+				if (beta <= alpha) {
+					return value;
+				}
+			}
+		}
+
+		int ply = rootDepth - depth;
+		int numMoves = orderMoves(ply, depth, ttMove);
+		int[] moves = context.getMoves(ply);
+
+		int bestColumnIndex = -1;
+		int maxEval = -INFINITY;
+		for (int i = 0; i < numMoves; i++) {
+			int columnIndex = moves[i];
+			int cellIndex = getCellIndex(columnIndex);
+			position.doMove(columnIndex);
+
+			int eval;
+			if (bestColumnIndex == -1) {
+				eval = -negamax(depth - 1, -beta, -alpha);
+			} else {
+				eval = -negamax(depth - 1, -alpha - 1, -alpha);
+				if (eval > alpha && eval < beta) {
+					eval = -negamax(depth - 1, -beta, -alpha);
+				}
+			}
+			position.undoLastMove();
+			if (searchAborted) {
+				return 0;
+			}
+
+			if (eval > maxEval || bestColumnIndex == -1) {
+				maxEval = eval;
+				bestColumnIndex = columnIndex;
+				if (depth == rootDepth) {
+					rootBestMove = columnIndex;
+				}
+			}
+			alpha = Math.max(alpha, eval);
+			if (beta <= alpha) {
+				betaCutoffs[i]++;
+				if (columnIndex != ttMove) {
+					updateKillerMoves(ply, columnIndex);
+					updateHistory(cellIndex, depth);
+				}
+				break;
+			}
+		}
+		if (isMirrored) {
+			bestColumnIndex = position.getMirroredColumn(bestColumnIndex);
+		}
+		storePosition(hash, maxEval, depth, originalAlpha, originalBeta, bestColumnIndex);
+		return maxEval;
+	}
+
+	/**
+	 * This function writes the possible moves of the position into orderedMoves[ply], best first
+	 * @return the number of possible moves
+	 */
+	private int orderMoves(int ply, int depth, int ttMove) {
+		int[] moves = context.getMoves(ply);
+		int[] scores = context.getMoveScores(ply);
+		int[] playerHistory = history[position.getCurrentPlayer().ordinal()];
+
+		int numMoves = 0;
+		for (int columnIndex : centerOrder) {
+			if (position.isPossibleMove(columnIndex) == false) {
+				continue;
+			}
+
+			int score = 0;
+			if (columnIndex == ttMove) {
+				score = TT_MOVE_SCORE;
+			} else if (useKillerMoves && columnIndex == killerMoves[ply][0]) {
+				score = KILLER_MOVE_SCORE;
+			} else if (useKillerMoves && columnIndex == killerMoves[ply][1]) {
+				score = KILLER_MOVE_SCORE - 1;
+			} else {
+				if (useThreats && depth >= MIN_THREAT_ORDERING_DEPTH) {
+					score += position.countThreats(columnIndex) * THREAT_SCORE;
+				}
+				if (useHistory) {
+					score += playerHistory[getCellIndex(columnIndex)];
+				}
+			}
+
+			// insertion sort, moves with equal scores stay in center order
+			int i = numMoves++;
+			while (i > 0 && scores[i - 1] < score) {
+				moves[i] = moves[i - 1];
+				scores[i] = scores[i - 1];
+				i--;
+			}
+			moves[i] = columnIndex;
+			scores[i] = score;
+		}
+		return numMoves;
+	}
+
+	private int getCellIndex(int columnIndex) {
+		return position.getRowDropIndex(columnIndex) * position.getNumOfColumns() + columnIndex;
+	}
+
+	private void updateKillerMoves(int ply, int columnIndex) {
+		if (killerMoves[ply][0] != columnIndex) {
+			killerMoves[ply][1] = killerMoves[ply][0];
+			killerMoves[ply][0] = columnIndex;
+		}
+	}
+
+	private void updateHistory(int cellIndex, int depth) {
+		int[] playerHistory = history[position.getCurrentPlayer().ordinal()];
+		playerHistory[cellIndex] = Math.min(playerHistory[cellIndex] + depth * depth, MAX_HISTORY_SCORE);
+	}
+
+	private void storePosition(long hash, int eval, int depth, int alpha, int beta, int bestColumnIndex) {
+		byte bound;
+		if (eval <= alpha) {
+			bound = TranspositionTable.UPPER_BOUND;
+		} else if (eval >= beta) {
+			bound = TranspositionTable.LOWER_BOUND;
+		} else {
+			bound = TranspositionTable.EXACT;
+		}
+		if (transpositionTable.store(hash, eval, depth, bound, bestColumnIndex)) {
+			ttReplacements++;
+		}
+	}
+
+	/**
+	 * This function evaluates the position from the view of the player to move.
+	 * Wins are worth more the sooner they happen, the score only depends on the number of moves played,
+	 * so it can be stored in the transposition table independent of the search root.
+	 */
+	public static int evaluatePosition(Gamelogic position) {
+		if (position.didGameEndInWin()) {
+			// the player who just moved has won
+			return -(WIN_SCORE - position.getNumOfMovesPlayed());
+		} else if (position.didGameEndInDraw()) {
+			return 0;
+		}
+
+		int evaluation = position.getBoardEvaluation() - position.getEvaluationUtility();
+		return (position.getCurrentPlayer() == Boardstate.YELLOW) ? evaluation : -evaluation;
+	}
+
+	public static boolean isWinOrLoss(int eval) {
+		return Math.abs(eval) > WIN_SCORE - MAX_NUM_OF_MOVES;
+	}
+
+	public static boolean isLoss(int eval) {
+		return eval < -(WIN_SCORE - MAX_NUM_OF_MOVES);
+	}
+
+	public int getBestMove() {
+		return bestMove;
+	}
+
+	public int getBestEval() {
+		return bestEval;
+	}
+
+	public int getDepthReached() {
+		return depthReached;
+	}
+
+	public long getNodesVisited() {
+		return nodesVisited;
+	}
+
+	public long getTTProbes() {
+		return ttProbes;
+	}
+
+	public long getTTHits() {
+		return ttHits;
+	}
+
+	public long getTTReplacements() {
+		return ttReplacements;
+	}
+
+	// the number of cutoffs caused by the first, second, ... move searched in a position
+	public long[] getBetaCutoffs() {
+		return betaCutoffs;
+	}
+}
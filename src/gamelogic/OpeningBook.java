@@ -0,0 +1,133 @@
+package gamelogic;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Read-only opening book, written by the OpeningBookGenerator.
+ * The file is memory-mapped and searched in place, so opening the book doesn't read or parse it.
+ *
+ * File layout: a header (magic number, number of rows, columns and coins needed for a win, number of entries)
+ * followed by the entries sorted by the canonical hash of their position.
+ */
+public class OpeningBook {
+
+	public static final String DEFAULT_FILE_NAME = "openingbook.bin";
+
+	// changes with the layout of the entries, so books of an older layout are rejected
+	static final int MAGIC = 0x43344F43;
+	static final int HEADER_SIZE = 5 * Integer.BYTES;
+	// entry: canonical hash | best move in the orientation of the canonical position | solver score | search depth
+	static final int ENTRY_SIZE = Long.BYTES + 3;
+	static final int MOVE_OFFSET = Long.BYTES;
+	static final int SCORE_OFFSET = Long.BYTES + 1;
+	static final int DEPTH_OFFSET = Long.BYTES + 2;
+
+	// stored if the position was only searched and not solved
+	public static final byte UNKNOWN_SCORE = Byte.MIN_VALUE;
+	// stored as the depth of solved positions
+	public static final byte SOLVED_DEPTH = Byte.MAX_VALUE;
+	// moves of positions that were only searched are played if the search reached at least this depth
+	public static final int MIN_SEARCH_DEPTH = 12;
+
+	private final MappedByteBuffer buffer;
+	private final int numRows;
+	private final int numColumns;
+	private final int numNeedForWin;
+	private final int numEntries;
+
+	private OpeningBook(MappedByteBuffer buffer) {
+		this.buffer = buffer;
+		this.numRows = buffer.getInt(Integer.BYTES);
+		this.numColumns = buffer.getInt(2 * Integer.BYTES);
+		this.numNeedForWin = buffer.getInt(3 * Integer.BYTES);
+		this.numEntries = buffer.getInt(4 * Integer.BYTES);
+	}
+
+	public static OpeningBook open(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			// the mapping stays valid after the channel is closed
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+				throw new IOException("not an opening book: " + path);
+			}
+			OpeningBook book = new OpeningBook(buffer);
+			if (buffer.capacity() < HEADER_SIZE + (long) book.numEntries * ENTRY_SIZE) {
+				throw new IOException("opening book is truncated: " + path);
+			}
+			return book;
+		}
+	}
+
+	/**
+	 * This function looks up the best move of the position
+	 * @return the column index of the move, or -1 if the position is not in the book, its entry is not usable or the move is not possible
+	 */
+	public int findMove(Gamelogic position) {
+		int offset = findEntry(position);
+		if (offset == -1 || isUsable(buffer.get(offset + SCORE_OFFSET), buffer.get(offset + DEPTH_OFFSET)) == false) {
+			return -1;
+		}
+		int move = buffer.get(offset + MOVE_OFFSET);
+		if (move < 0 || move >= numColumns) {
+			return -1;
+		}
+		if (position.isCanonicalHashMirrored()) {
+			move = position.getMirroredColumn(move);
+		}
+		// a corrupt book or a hash collision must not make the bot play an impossible move
+		return position.isPossibleMove(move) ? move : -1;
+	}
+
+	/**
+	 * This function looks up the solver score of the position, see Solver for the meaning of the scores
+	 * @return the score from the view of the player to move, or UNKNOWN_SCORE if the position was not solved or is not in the book
+	 */
+	public int getScore(Gamelogic position) {
+		int offset = findEntry(position);
+		if (offset == -1) {
+			return UNKNOWN_SCORE;
+		}
+		return buffer.get(offset + SCORE_OFFSET);
+	}
+
+	// the move of an entry is played if the position was solved or searched deep enough
+	static boolean isUsable(int score, int depth) {
+		return score != UNKNOWN_SCORE || depth >= MIN_SEARCH_DEPTH;
+	}
+
+	// binary search over the sorted entries, returns the byte offset of the entry or -1
+	private int findEntry(Gamelogic position) {
+		if (isForBoard(position) == false) {
+			return -1;
+		}
+		long key = position.getCanonicalHash();
+		int low = 0;
+		int high = numEntries - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int offset = HEADER_SIZE + middle * ENTRY_SIZE;
+			int comparison = Long.compare(buffer.getLong(offset), key);
+			if (comparison < 0) {
+				low = middle + 1;
+			} else if (comparison > 0) {
+				high = middle - 1;
+			} else {
+				return offset;
+			}
+		}
+		return -1;
+	}
+
+	public boolean isForBoard(Gamelogic position) {
+		return position.getNumOfRows() == numRows && position.getNumOfColumns() == numColumns
+				&& position.getNumNeedForWin() == numNeedForWin;
+	}
+
+	public int getNumOfEntries() {
+		return numEntries;
+	}
+}
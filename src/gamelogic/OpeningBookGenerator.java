@@ -0,0 +1,151 @@
+package gamelogic;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Writes the opening book for the standard board: every position up to the given number of moves is solved,
+ * or searched with the MinimaxBot if the solver doesn't finish within the time budget.
+ * The move of a searched position is only played from the book if the search reached OpeningBook.MIN_SEARCH_DEPTH.
+ * Usage: OpeningBookGenerator [file] [maxPly] [time budget per position in ms]
+ */
+public class OpeningBookGenerator {
+
+	private final int maxPly;
+	private final Solver solver;
+	private final MinimaxBot minimaxBot;
+
+	// positions that are already in the book, by canonical hash
+	private final Set<Long> visitedPositions = new HashSet<>();
+	private long[] keys = new long[1024];
+	private byte[] moves = new byte[1024];
+	private byte[] scores = new byte[1024];
+	private byte[] depths = new byte[1024];
+	private int numEntries;
+	private int numSolved;
+	private int numUsable;
+
+	public OpeningBookGenerator(int maxPly, long timeBudgetMillis) {
+		this.maxPly = maxPly;
+		this.solver = new Solver();
+		this.solver.setTimeBudget(timeBudgetMillis);
+		this.minimaxBot = new MinimaxBot();
+		this.minimaxBot.setTimeBudget(timeBudgetMillis);
+	}
+
+	public static void main(String[] args) throws IOException {
+		Path path = Paths.get(args.length > 0 ? args[0] : OpeningBook.DEFAULT_FILE_NAME);
+		int maxPly = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+		long timeBudgetMillis = args.length > 2 ? Long.parseLong(args[2]) : 200;
+
+		long startTime = System.currentTimeMillis();
+		OpeningBookGenerator generator = new OpeningBookGenerator(maxPly, timeBudgetMillis);
+		Gamelogic position = createStandardPosition();
+		generator.addPositions(position);
+		generator.write(path, position);
+		long endTime = System.currentTimeMillis();
+
+		// print statistics
+		System.out.println("      positions: " + generator.numEntries);
+		System.out.println("         solved: " + generator.numSolved);
+		System.out.println("         usable: " + generator.numUsable);
+		System.out.println("         maxPly: " + maxPly);
+		System.out.println("    time needed: " + (endTime - startTime) + "ms");
+		System.out.println("    written to: " + path.toAbsolutePath());
+	}
+
+	private static Gamelogic createStandardPosition() {
+		Gamelogic position = new Gamelogic(Main.STANDARD_NUM_ROWS, Main.STANDARD_NUM_COLUMNS, Main.STANDARD_NUM_NEED_FOR_WIN);
+		position.initNewGame();
+		return position;
+	}
+
+	// depth first over all positions up to maxPly, mirrored positions are only added once
+	private void addPositions(Gamelogic position) {
+		if (position.didGameEnd() || visitedPositions.add(position.getCanonicalHash()) == false) {
+			return;
+		}
+		addEntry(position);
+
+		if (position.getNumOfMovesPlayed() >= maxPly) {
+			return;
+		}
+		for (int columnIndex = 0; columnIndex < position.getNumOfColumns(); columnIndex++) {
+			if (position.doMove(columnIndex)) {
+				addPositions(position);
+				position.undoLastMove();
+			}
+		}
+	}
+
+	private void addEntry(Gamelogic position) {
+		int bestMove = solver.findBestMove(position);
+		int score = OpeningBook.UNKNOWN_SCORE;
+		int depth = OpeningBook.SOLVED_DEPTH;
+		if (bestMove != -1) {
+			score = solver.getBestScore();
+			numSolved++;
+		} else {
+			minimaxBot.iterativeDeepening(position);
+			bestMove = minimaxBot.getBestMove();
+			depth = Math.min(minimaxBot.getDepthReached(), OpeningBook.SOLVED_DEPTH - 1);
+		}
+		if (OpeningBook.isUsable(score, depth)) {
+			numUsable++;
+		}
+
+		// moves are stored for the canonical orientation of the position
+		if (position.isCanonicalHashMirrored()) {
+			bestMove = position.getMirroredColumn(bestMove);
+		}
+
+		if (numEntries == keys.length) {
+			keys = Arrays.copyOf(keys, 2 * numEntries);
+			moves = Arrays.copyOf(moves, 2 * numEntries);
+			scores = Arrays.copyOf(scores, 2 * numEntries);
+			depths = Arrays.copyOf(depths, 2 * numEntries);
+		}
+		keys[numEntries] = position.getCanonicalHash();
+		moves[numEntries] = (byte) bestMove;
+		scores[numEntries] = (byte) score;
+		depths[numEntries] = (byte) depth;
+		numEntries++;
+	}
+
+	private void write(Path path, Gamelogic position) throws IOException {
+		// the book is searched with a binary search -> sort the entries by key
+		Integer[] order = new Integer[numEntries];
+		for (int i = 0; i < numEntries; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, (a, b) -> Long.compare(keys[a], keys[b]));
+
+		ByteBuffer buffer = ByteBuffer.allocate(OpeningBook.HEADER_SIZE + numEntries * OpeningBook.ENTRY_SIZE);
+		buffer.putInt(OpeningBook.MAGIC);
+		buffer.putInt(position.getNumOfRows());
+		buffer.putInt(position.getNumOfColumns());
+		buffer.putInt(position.getNumNeedForWin());
+		buffer.putInt(numEntries);
+		for (int i : order) {
+			buffer.putLong(keys[i]);
+			buffer.put(moves[i]);
+			buffer.put(scores[i]);
+			buffer.put(depths[i]);
+		}
+		buffer.flip();
+
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+		}
+	}
+}
@@ -0,0 +1,142 @@
+package gamelogic;
+
+import java.util.random.RandomGenerator;
+
+import gamelogic.Gamelogic.Boardstate;
+
+/**
+ * Kernel for random playouts, used by the Simulator and the MctsBot. It works on a compact copy of the position:
+ * the bitboards of both players, the drop rows and the list of columns that are not full yet. The moves are drawn
+ * uniformly from that list, so there are no retries, and only the lines through the dropped coin are checked for a win.
+ */
+public class Playout {
+
+	private final int numRows;
+	private final int numColumns;
+	private final int numNeedForWin;
+	private final int bitsPerColumn;
+	private final int numWords;
+	private final long[] lineMasks;
+	private final int[][] cellLines;
+
+	// stones[player * numWords + word], player 0 is the player to move at the start of the playout
+	private final long[] stones;
+	private final int[] rowDropIndices;
+	// the columns that are not full, a full column is replaced by the last one
+	private final int[] openColumns;
+	private int numOpenColumns;
+	private int movesPlayed;
+	private int firstMove;
+	// the moves of the playout, at the index of the move in the game
+	private final int[] moves;
+	private Boardstate startPlayer;
+	// the result if the game already ended before the playout
+	private Boardstate endResult;
+
+	public Playout(Gamelogic position) {
+		this.numRows = position.getNumOfRows();
+		this.numColumns = position.getNumOfColumns();
+		this.numNeedForWin = position.getNumNeedForWin();
+		this.bitsPerColumn = numRows + 1;
+		this.numWords = position.getNumOfBitboardWords();
+		this.lineMasks = position.getLineMasks();
+		this.cellLines = position.getCellLines();
+		this.stones = new long[2 * numWords];
+		this.rowDropIndices = new int[numColumns];
+		this.openColumns = new int[numColumns];
+		this.moves = new int[numRows * numColumns];
+		reset(position);
+	}
+
+	/**
+	 * This function copies the position, which has to be on the same board, the next playout starts from it
+	 */
+	public void reset(Gamelogic position) {
+		for (int i = 0; i < numWords; i++) {
+			long currentPlayerStones = position.getCurrentPlayerStones(i);
+			stones[i] = currentPlayerStones;
+			stones[numWords + i] = position.getOccupiedCells(i) ^ currentPlayerStones;
+		}
+		numOpenColumns = 0;
+		for (int columnIndex = 0; columnIndex < numColumns; columnIndex++) {
+			rowDropIndices[columnIndex] = position.getRowDropIndex(columnIndex);
+			if (rowDropIndices[columnIndex] >= 0) {
+				openColumns[numOpenColumns++] = columnIndex;
+			}
+		}
+		movesPlayed = position.getNumOfMovesPlayed();
+		firstMove = -1;
+		startPlayer = position.getCurrentPlayer();
+		endResult = position.didGameEnd() ? position.getPlayerWon() : null;
+	}
+
+	/**
+	 * This function plays random moves from the position until the game ends. The position is changed,
+	 * so every playout needs a reset before.
+	 * @return the player who won, NOT_DROPPED for a draw
+	 */
+	public Boardstate play(RandomGenerator random) {
+		if (endResult != null) {
+			return endResult;
+		}
+		int player = 0;
+		while (numOpenColumns > 0) {
+			int openIndex = random.nextInt(numOpenColumns);
+			int columnIndex = openColumns[openIndex];
+			int rowIndex = rowDropIndices[columnIndex]--;
+			if (rowIndex == 0) {
+				openColumns[openIndex] = openColumns[--numOpenColumns];
+			}
+
+			// same bit layout as in Gamelogic
+			int bit = columnIndex * bitsPerColumn + numRows - 1 - rowIndex;
+			stones[player * numWords + bit / Long.SIZE] |= 1L << bit;
+			moves[movesPlayed++] = columnIndex;
+			if (firstMove == -1) {
+				firstMove = columnIndex;
+			}
+
+			// with alternating moves, nobody can have a full line before 2 * numNeedForWin - 1 moves
+			if (movesPlayed >= 2 * numNeedForWin - 1 && isWin(player, rowIndex * numColumns + columnIndex)) {
+				return (player == 0) ? startPlayer : getOpponent(startPlayer);
+			}
+			player ^= 1;
+		}
+		return Boardstate.NOT_DROPPED;
+	}
+
+	private boolean isWin(int player, int cellIndex) {
+		int stonesOffset = player * numWords;
+		for (int line : cellLines[cellIndex]) {
+			int offset = line * numWords;
+			boolean complete = true;
+			for (int i = 0; i < numWords && complete; i++) {
+				long mask = lineMasks[offset + i];
+				complete = (stones[stonesOffset + i] & mask) == mask;
+			}
+			if (complete) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static Boardstate getOpponent(Boardstate player) {
+		return (player == Boardstate.RED) ? Boardstate.YELLOW : Boardstate.RED;
+	}
+
+	// the first move of the last playout, -1 if it played no move
+	public int getFirstMove() {
+		return firstMove;
+	}
+
+	// the moves of the last playout at their index in the game, the moves before the start position are not set
+	int[] getMoves() {
+		return moves;
+	}
+
+	// the number of moves of the game at the end of the playout
+	public int getNumOfMovesPlayed() {
+		return movesPlayed;
+	}
+}
@@ -0,0 +1,78 @@
+package gamelogic;
+
+/**
+ * Measures the speedup of the parallel MinimaxBot search against the single-threaded search.
+ * Every benchmark position is searched to the same depth with one thread and with the given number of threads.
+ * Usage: SearchBenchmark [numThreads] [depth] [move ordering heuristics, e.g. killers,history,threats or none]
+ * Without the heuristics argument the bots search with their default move ordering.
+ */
+public class SearchBenchmark {
+
+	// opening and middle game positions on the standard board, as sequences of column indices
+	private static final int[][] POSITIONS = {
+			{3, 3, 2},
+			{3, 2, 3, 3, 4},
+			{3, 3, 3, 3, 2, 4, 4},
+			{3, 3, 3, 3, 3, 3, 2},
+			{2, 4, 3, 3, 4, 2, 5},
+	};
+
+	private static String heuristics;
+
+	public static void main(String[] args) {
+		int numThreads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+		int depth = args.length > 1 ? Integer.parseInt(args[1]) : 14;
+		heuristics = args.length > 2 ? args[2] : null;
+
+		// warm up the JIT, so the first position isn't measured with interpreted code
+		searchPosition(POSITIONS[0], 1, depth);
+
+		long singleThreadedTime = 0;
+		long parallelTime = 0;
+		for (int[] moves : POSITIONS) {
+			long singleTime = searchPosition(moves, 1, depth);
+			long multiTime = searchPosition(moves, numThreads, depth);
+			singleThreadedTime += singleTime;
+			parallelTime += multiTime;
+			System.out.println("position with " + moves.length + " moves: " + singleTime + "ms -> " + multiTime + "ms");
+		}
+
+		// print statistics
+		System.out.println("              threads: " + numThreads);
+		System.out.println("                depth: " + depth);
+		System.out.println("   ordering heuristics: " + (heuristics == null ? "default" : heuristics));
+		System.out.println(" single-threaded time: " + singleThreadedTime + "ms");
+		System.out.println("        parallel time: " + parallelTime + "ms");
+		System.out.println("              speedup: " + (double) singleThreadedTime / Math.max(1, parallelTime));
+	}
+
+	private static long searchPosition(int[] moves, int numThreads, int depth) {
+		Gamelogic position = new Gamelogic(Main.STANDARD_NUM_ROWS, Main.STANDARD_NUM_COLUMNS, Main.STANDARD_NUM_NEED_FOR_WIN);
+		position.initNewGame();
+		for (int columnIndex : moves) {
+			position.doMove(columnIndex);
+		}
+
+		// minimax searches for yellow
+		if (position.getCurrentPlayer() == Gamelogic.Boardstate.RED) {
+			position.switchPlayer();
+		}
+
+		MinimaxBot bot = new MinimaxBot();
+		bot.setNumThreads(numThreads);
+		if (heuristics != null) {
+			bot.setMoveOrdering(heuristics.contains("killers"), heuristics.contains("history"), heuristics.contains("threats"));
+		}
+		bot.setMaxDepth(depth);
+		bot.setTimeBudget(Long.MAX_VALUE / 2);
+
+		long startTime = System.currentTimeMillis();
+		bot.iterativeDeepening(position);
+		long endTime = System.currentTimeMillis();
+
+		long timeNeeded = Math.max(1, endTime - startTime);
+		System.out.println("  " + numThreads + " thread(s): depth " + bot.getDepthReached() + ", "
+				+ bot.getNodesVisited() + " nodes, " + bot.getNodesVisited() * 1000 / timeNeeded + " nodes/s");
+		return endTime - startTime;
+	}
+}
@@ -0,0 +1,56 @@
+package gamelogic;
+
+/**
+ * Reusable state of one search thread: its own copy of the position and buffers for the move lists of every ply.
+ * Every thread has one context, which is reset to the position of each search. After the first search on a board
+ * the context allocates nothing anymore, so many bots can serve many games without a copy of the board per move.
+ */
+public class SearchContext {
+
+	private static final ThreadLocal<SearchContext> threadContext = new ThreadLocal<>();
+
+	private final Gamelogic position;
+	// indexed by the distance from the root (ply)
+	private final int[][] moves;
+	private final int[][] moveScores;
+
+	public SearchContext(Gamelogic position) {
+		this.position = new Gamelogic(position);
+		int numColumns = position.getNumOfColumns();
+		int maxNumOfPlies = position.getNumOfRows() * numColumns + 1;
+		this.moves = new int[maxNumOfPlies][numColumns];
+		this.moveScores = new int[maxNumOfPlies][numColumns];
+	}
+
+	/**
+	 * This function returns the context of the current thread, set to the given position.
+	 * A new context is only created on the first call of the thread or if the board changed.
+	 */
+	public static SearchContext forCurrentThread(Gamelogic position) {
+		SearchContext context = threadContext.get();
+		if (context == null || context.position.isSameBoard(position) == false) {
+			context = new SearchContext(position);
+			threadContext.set(context);
+		} else {
+			context.reset(position);
+		}
+		return context;
+	}
+
+	public void reset(Gamelogic position) {
+		this.position.copyFrom(position);
+	}
+
+	// the copy of the position that the search may change
+	public Gamelogic getPosition() {
+		return position;
+	}
+
+	public int[] getMoves(int ply) {
+		return moves[ply];
+	}
+
+	public int[] getMoveScores(int ply) {
+		return moveScores[ply];
+	}
+}
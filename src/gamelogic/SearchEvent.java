@@ -0,0 +1,56 @@
+package gamelogic;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event of one search of the MinimaxBot, recorded with e.g. -XX:StartFlightRecording.
+ */
+@Name("gamelogic.Search")
+@Label("Minimax Search")
+@Category("Connect Four")
+@Description("One iterative deepening search of the MinimaxBot")
+public class SearchEvent extends Event {
+
+	@Label("Pondering")
+	boolean pondering;
+
+	@Label("Nodes Visited")
+	long nodesVisited;
+
+	@Label("Nodes per Second")
+	long nodesPerSecond;
+
+	@Label("Depth Reached")
+	int depthReached;
+
+	@Label("Branching Factor")
+	double branchingFactor;
+
+	@Label("TT Probes")
+	long ttProbes;
+
+	@Label("TT Hits")
+	long ttHits;
+
+	@Label("TT Replacements")
+	long ttReplacements;
+
+	@Label("First Move Cutoff Rate")
+	double firstMoveCutoffRate;
+
+	void set(SearchStatistics statistics) {
+		pondering = statistics.isPondering();
+		nodesVisited = statistics.getNodesVisited();
+		nodesPerSecond = statistics.getNodesPerSecond();
+		depthReached = statistics.getDepthReached();
+		branchingFactor = statistics.getBranchingFactor();
+		ttProbes = statistics.getTTProbes();
+		ttHits = statistics.getTTHits();
+		ttReplacements = statistics.getTTReplacements();
+		firstMoveCutoffRate = statistics.getFirstMoveCutoffRate();
+	}
+}
@@ -0,0 +1,81 @@
+package gamelogic;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-process registry of the totals of all searches of all MinimaxBots, so many bots can record at the same time.
+ */
+public class SearchMetrics {
+
+	private static final LongAdder searches = new LongAdder();
+	private static final LongAdder ponderSearches = new LongAdder();
+	private static final LongAdder nodesVisited = new LongAdder();
+	private static final LongAdder ttProbes = new LongAdder();
+	private static final LongAdder ttHits = new LongAdder();
+	private static final LongAdder ttReplacements = new LongAdder();
+	private static final LongAdder depthReached = new LongAdder();
+	private static final LongAdder timeNanos = new LongAdder();
+
+	private SearchMetrics() {
+	}
+
+	static void record(SearchStatistics statistics) {
+		searches.increment();
+		if (statistics.isPondering()) {
+			ponderSearches.increment();
+		}
+		nodesVisited.add(statistics.getNodesVisited());
+		ttProbes.add(statistics.getTTProbes());
+		ttHits.add(statistics.getTTHits());
+		ttReplacements.add(statistics.getTTReplacements());
+		depthReached.add(statistics.getDepthReached());
+		timeNanos.add(statistics.getTimeNanos());
+	}
+
+	public static void reset() {
+		searches.reset();
+		ponderSearches.reset();
+		nodesVisited.reset();
+		ttProbes.reset();
+		ttHits.reset();
+		ttReplacements.reset();
+		depthReached.reset();
+		timeNanos.reset();
+	}
+
+	public static long getNumOfSearches() {
+		return searches.sum();
+	}
+
+	public static long getNumOfPonderSearches() {
+		return ponderSearches.sum();
+	}
+
+	public static long getNodesVisited() {
+		return nodesVisited.sum();
+	}
+
+	public static long getNodesPerSecond() {
+		return (long) (nodesVisited.sum() * 1e9 / Math.max(1, timeNanos.sum()));
+	}
+
+	public static long getTTProbes() {
+		return ttProbes.sum();
+	}
+
+	public static long getTTHits() {
+		return ttHits.sum();
+	}
+
+	public static long getTTReplacements() {
+		return ttReplacements.sum();
+	}
+
+	public static double getAverageDepthReached() {
+		return (double) depthReached.sum() / Math.max(1, searches.sum());
+	}
+
+	public static long getTimeNanos() {
+		return timeNanos.sum();
+	}
+}
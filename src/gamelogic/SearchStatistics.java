@@ -0,0 +1,127 @@
+package gamelogic;
+
+/**
+ * Statistics of one search of the MinimaxBot, summed over all search threads.
+ */
+public class SearchStatistics {
+
+	private final boolean pondering;
+	private long nodesVisited;
+	private long ttProbes;
+	private long ttHits;
+	private long ttReplacements;
+	private final long[] betaCutoffs;
+	private int depthReached;
+	private int bestMove;
+	private int evaluation;
+	private long timeNanos;
+	// the search found a forced loss, the bot plays the move that delays it the longest
+	private boolean trapped;
+
+	SearchStatistics(boolean pondering, int numColumns) {
+		this.pondering = pondering;
+		this.betaCutoffs = new long[numColumns];
+	}
+
+	void addThread(MinimaxSearch search) {
+		nodesVisited += search.getNodesVisited();
+		ttProbes += search.getTTProbes();
+		ttHits += search.getTTHits();
+		ttReplacements += search.getTTReplacements();
+		long[] threadCutoffs = search.getBetaCutoffs();
+		for (int i = 0; i < betaCutoffs.length; i++) {
+			betaCutoffs[i] += threadCutoffs[i];
+		}
+	}
+
+	void finish(int bestMove, int evaluation, int depthReached, long timeNanos) {
+		this.bestMove = bestMove;
+		this.evaluation = evaluation;
+		this.depthReached = depthReached;
+		this.timeNanos = timeNanos;
+	}
+
+	void markTrapped() {
+		this.trapped = true;
+	}
+
+	public boolean isTrapped() {
+		return trapped;
+	}
+
+	public boolean isPondering() {
+		return pondering;
+	}
+
+	public long getNodesVisited() {
+		return nodesVisited;
+	}
+
+	public long getNodesPerSecond() {
+		// in double, since the nodes times a billion overflow a long after some minutes of searching
+		return (long) (nodesVisited * 1e9 / Math.max(1, timeNanos));
+	}
+
+	public long getTTProbes() {
+		return ttProbes;
+	}
+
+	public long getTTHits() {
+		return ttHits;
+	}
+
+	public long getTTReplacements() {
+		return ttReplacements;
+	}
+
+	public double getTTHitRate() {
+		return (double) ttHits / Math.max(1, ttProbes);
+	}
+
+	// the number of cutoffs caused by the first, second, ... move searched in a position
+	public long[] getBetaCutoffs() {
+		return betaCutoffs.clone();
+	}
+
+	// the share of cutoffs caused by the first move, the higher the better the move ordering
+	public double getFirstMoveCutoffRate() {
+		long cutoffs = 0;
+		for (long cutoff : betaCutoffs) {
+			cutoffs += cutoff;
+		}
+		return (cutoffs > 0) ? (double) betaCutoffs[0] / cutoffs : 0;
+	}
+
+	// effective branching factor: the number of children per node a full tree of the reached depth would need
+	public double getBranchingFactor() {
+		if (depthReached == 0) {
+			return 0;
+		}
+		return Math.pow(nodesVisited, 1.0 / depthReached);
+	}
+
+	public int getDepthReached() {
+		return depthReached;
+	}
+
+	public int getBestMove() {
+		return bestMove;
+	}
+
+	public int getEvaluation() {
+		return evaluation;
+	}
+
+	public long getTimeNanos() {
+		return timeNanos;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("best move %d, evaluation %d, depth %d, %d nodes in %dms (%d nodes/s), branching factor %.2f, "
+				+ "tt hit rate %.1f%%, %d tt replacements, first move cutoffs %.1f%%",
+				bestMove, evaluation, depthReached, nodesVisited, timeNanos / 1_000_000, getNodesPerSecond(),
+				getBranchingFactor(), 100 * getTTHitRate(), ttReplacements, 100 * getFirstMoveCutoffRate())
+				+ (trapped ? ", ran into a trap" : "");
+	}
+}
@@ -1,100 +1,56 @@
 package gamelogic;
 
-import java.util.List;
-
-import gamelogic.Gamelogic.Boardstate;
-
-import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
 
+/**
+ * Bot that wins if it can, blocks the wins of the opponent and otherwise plays a random move near the center
+ * that doesn't allow the opponent to win on top of it. All checks work on the winning lines of the bitboards,
+ * so the bot answers in microseconds on every board size.
+ */
 public class SimpleBot extends Bot {
 	
 	@Override
-	public boolean isNextMoveReady() {
-		return true;
-	}
-	
-	@Override
-	public int getNextMove(Gamelogic position) {
-		int[] rowDropIndices = position.getRowDropIndices();
-		Boardstate[][] board = position.getBoard();
-		
+	protected int computeMove(Gamelogic position, long budgetMillis, Future<Integer> request) {
 		// check own winning moves
-		int[] ownWinningMoves = seachWinningMoves(position, board, rowDropIndices, Boardstate.YELLOW);
-		if (ownWinningMoves.length > 0) {
-			return ownWinningMoves[0];
+		long ownWinningMoves = position.getWinningColumns(false);
+		if (ownWinningMoves != 0) {
+			return Long.numberOfTrailingZeros(ownWinningMoves);
 		}
 		
 		// check opponents winning moves
-		int[] opponentsWinningMoves = seachWinningMoves(position, board, rowDropIndices, Boardstate.RED);
-		if (opponentsWinningMoves.length > 0) {
-			return opponentsWinningMoves[0];
+		long opponentsWinningMoves = position.getWinningColumns(true);
+		if (opponentsWinningMoves != 0) {
+			return Long.numberOfTrailingZeros(opponentsWinningMoves);
 		}
 		
-		// search a good move:
-		int columnIndex;
-		boolean badMove;
-		boolean[] instantlyLosing = new boolean[position.getNumOfColumns()];
-		do {
-		// try a random move
-		columnIndex = getPossibleRandomMove(position);
+		// search a good move: does move allow the opponent to win?
+		long possibleMoves = position.getPossibleColumns();
+		long goodMoves = possibleMoves & ~position.getColumnsBelowOpponentWins();
 		// no chance?
-		if (Arrays.equals(instantlyLosing, position.getPossibleMoves())) {
-			return columnIndex;
-		}
-		badMove = false;
-		// was move already checked as losing?
-		if (instantlyLosing[columnIndex]) {
-			badMove = true;
-			continue;
+		if (goodMoves == 0) {
+			goodMoves = possibleMoves;
 		}
-		
-		// apply random move to board
-		int rowIndex = rowDropIndices[columnIndex];
-		board[rowIndex][columnIndex] = Boardstate.YELLOW;
-		rowDropIndices[columnIndex] --;
-		
-		// check opponents winning moves
-		opponentsWinningMoves = seachWinningMoves(position, board, rowDropIndices, Boardstate.RED);
-		
-		// does move allow red to win? 
-		if (opponentsWinningMoves.length > 0) {
-//			System.out.println("Red could then win with : " + Arrays.toString(opponentsWinningMoves));
-			badMove = true;
-			instantlyLosing[columnIndex] = true;
-			
-			// undo move
-			board[rowIndex][columnIndex] = Boardstate.NOT_DROPPED;
-			rowDropIndices[columnIndex] ++;
-		}
-		
-		} while (badMove == true);
-		
-		return columnIndex;
+		return pickRandomMove(position, goodMoves);
 	}
 	
-	private int[] seachWinningMoves(Gamelogic position, Boardstate[][] board, int[] rowDropIndices, Boardstate player) {
-		List<Integer> winningMoves = new ArrayList<>();
-		
-		for (int columnIndex = 0; columnIndex < position.getNumOfColumns(); columnIndex++) {
-			// is move possible?
-			int rowIndex = rowDropIndices[columnIndex]; 
-			if (rowIndex < 0) {
-				continue;
+	/**
+	 * This function picks a random column around the center like getPossibleRandomMove,
+	 * but takes the closest allowed column instead of trying again
+	 * @param moves a mask with bit i set if column i is allowed
+	 */
+	private int pickRandomMove(Gamelogic position, long moves) {
+		double randomColumn = ThreadLocalRandom.current().nextGaussian(position.getNumOfColumns()/2, 1);
+		int bestMove = -1;
+		double bestDistance = Double.POSITIVE_INFINITY;
+		for (long remainingMoves = moves; remainingMoves != 0; remainingMoves &= remainingMoves - 1) {
+			int columnIndex = Long.numberOfTrailingZeros(remainingMoves);
+			double distance = Math.abs(columnIndex + 0.5 - randomColumn);
+			if (distance < bestDistance) {
+				bestDistance = distance;
+				bestMove = columnIndex;
 			}
-			// apply move
-			board[rowIndex][columnIndex] = player;
-			
-			// check for win:
-			boolean hasWon = (boolean) Gamelogic.checkForWin(board, player, position.getNumNeedForWin())[0];
-			if (hasWon) {
-				winningMoves.add(columnIndex);
-			}
-			
-			// undo move
-			board[rowIndex][columnIndex] = Boardstate.NOT_DROPPED;
 		}
-		
-		return winningMoves.stream().mapToInt(i -> i).toArray();
+		return bestMove;
 	}
-}
\ No newline at end of file
+}
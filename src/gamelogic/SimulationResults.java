@@ -0,0 +1,174 @@
+package gamelogic;
+
+import java.util.Arrays;
+
+import gamelogic.Gamelogic.Boardstate;
+
+/**
+ * Results of a number of simulated games, as histograms of constant size: the game lengths by result
+ * and the results by the first move. Every worker of the Simulator counts its own games,
+ * the results of the workers are added up.
+ */
+public class SimulationResults {
+
+	private static final Boardstate[] RESULTS = Boardstate.values();
+
+	private final int numRows;
+	private final int numColumns;
+	private final int maxNumOfMoves;
+	// gameLengths[result][moves]: the number of games that ended with the result after that many moves,
+	// the result is the winner or NOT_DROPPED for a draw
+	private final long[][] gameLengths;
+	// firstMoveResults[column][result]: the results of the games that started in the column
+	private final long[][] firstMoveResults;
+
+	public SimulationResults(int numRows, int numColumns) {
+		this.numRows = numRows;
+		this.numColumns = numColumns;
+		this.maxNumOfMoves = numRows * numColumns;
+		this.gameLengths = new long[RESULTS.length][maxNumOfMoves + 1];
+		this.firstMoveResults = new long[numColumns][RESULTS.length];
+	}
+
+	// the winner is NOT_DROPPED for a draw, the first move -1 if no move was played
+	void addGame(Boardstate winner, int movesPlayed, int firstMove) {
+		gameLengths[winner.ordinal()][movesPlayed]++;
+		if (firstMove >= 0) {
+			firstMoveResults[firstMove][winner.ordinal()]++;
+		}
+	}
+
+	synchronized void add(SimulationResults results) {
+		for (int result = 0; result < RESULTS.length; result++) {
+			for (int moves = 0; moves <= maxNumOfMoves; moves++) {
+				gameLengths[result][moves] += results.gameLengths[result][moves];
+			}
+			for (int column = 0; column < numColumns; column++) {
+				firstMoveResults[column][result] += results.firstMoveResults[column][result];
+			}
+		}
+	}
+
+	void clear() {
+		for (int result = 0; result < RESULTS.length; result++) {
+			Arrays.fill(gameLengths[result], 0);
+		}
+		for (long[] columnResults : firstMoveResults) {
+			Arrays.fill(columnResults, 0);
+		}
+	}
+
+	// a consistent copy, while the workers keep adding their results
+	synchronized SimulationResults copy() {
+		SimulationResults copy = new SimulationResults(numRows, numColumns);
+		copy.add(this);
+		return copy;
+	}
+
+	private long count(Boardstate result) {
+		long games = 0;
+		for (long length : gameLengths[result.ordinal()]) {
+			games += length;
+		}
+		return games;
+	}
+
+	public long getNumOfGames() {
+		return count(Boardstate.RED) + count(Boardstate.YELLOW) + count(Boardstate.NOT_DROPPED);
+	}
+
+	public long getMovesPlayedSum() {
+		long movesPlayedSum = 0;
+		for (long[] resultLengths : gameLengths) {
+			for (int moves = 0; moves <= maxNumOfMoves; moves++) {
+				movesPlayedSum += moves * resultLengths[moves];
+			}
+		}
+		return movesPlayedSum;
+	}
+
+	public long getRedScore() {
+		return count(Boardstate.RED);
+	}
+
+	public long getYellowScore() {
+		return count(Boardstate.YELLOW);
+	}
+
+	public long getDraws() {
+		return count(Boardstate.NOT_DROPPED);
+	}
+
+	public double getAverageMovesPlayed() {
+		return (double) getMovesPlayedSum() / Math.max(1, getNumOfGames());
+	}
+
+	// the number of games that ended with the result after the given number of moves
+	public long getNumOfGames(Boardstate result, int movesPlayed) {
+		return gameLengths[result.ordinal()][movesPlayed];
+	}
+
+	// the number of games that started in the column and ended with the result
+	public long getNumOfGamesAfterFirstMove(int columnIndex, Boardstate result) {
+		return firstMoveResults[columnIndex][result.ordinal()];
+	}
+
+	public void print() {
+		System.out.println("   red score: " + getRedScore());
+		System.out.println("yellow score: " + getYellowScore());
+		System.out.println("        draw: " + getDraws());
+		System.out.println(" total games: " + getNumOfGames());
+		System.out.println(" total moves: " + getMovesPlayedSum());
+		System.out.println("avg moves till game finish: " + getAverageMovesPlayed());
+		for (int column = 0; column < numColumns; column++) {
+			long[] columnResults = firstMoveResults[column];
+			long games = columnResults[0] + columnResults[1] + columnResults[2];
+			System.out.println(String.format("first move %2d: red wins %.2f%%", column,
+					100.0 * columnResults[Boardstate.RED.ordinal()] / Math.max(1, games)));
+		}
+	}
+
+	public static String getCsvHeader() {
+		return "games,red,yellow,draws,avg_moves";
+	}
+
+	public String toCsvRow() {
+		return getNumOfGames() + "," + getRedScore() + "," + getYellowScore() + "," + getDraws() + "," + getAverageMovesPlayed();
+	}
+
+	/**
+	 * This function writes all histograms as json: the totals, the game lengths by result
+	 * (the wins by move number) and the results by the first move
+	 */
+	public String toJson() {
+		StringBuilder json = new StringBuilder();
+		json.append("{\n");
+		json.append("  \"games\": ").append(getNumOfGames()).append(",\n");
+		json.append("  \"red\": ").append(getRedScore()).append(",\n");
+		json.append("  \"yellow\": ").append(getYellowScore()).append(",\n");
+		json.append("  \"draws\": ").append(getDraws()).append(",\n");
+		json.append("  \"averageMoves\": ").append(getAverageMovesPlayed()).append(",\n");
+		json.append("  \"redWinsByMoves\": ").append(toJsonArray(gameLengths[Boardstate.RED.ordinal()])).append(",\n");
+		json.append("  \"yellowWinsByMoves\": ").append(toJsonArray(gameLengths[Boardstate.YELLOW.ordinal()])).append(",\n");
+		json.append("  \"drawsByMoves\": ").append(toJsonArray(gameLengths[Boardstate.NOT_DROPPED.ordinal()])).append(",\n");
+		json.append("  \"firstMoves\": [");
+		for (int column = 0; column < numColumns; column++) {
+			long[] columnResults = firstMoveResults[column];
+			json.append((column == 0) ? "\n" : ",\n");
+			json.append("    {\"column\": ").append(column);
+			json.append(", \"red\": ").append(columnResults[Boardstate.RED.ordinal()]);
+			json.append(", \"yellow\": ").append(columnResults[Boardstate.YELLOW.ordinal()]);
+			json.append(", \"draws\": ").append(columnResults[Boardstate.NOT_DROPPED.ordinal()]).append("}");
+		}
+		json.append("\n  ]\n}\n");
+		return json.toString();
+	}
+
+	private static String toJsonArray(long[] values) {
+		StringBuilder array = new StringBuilder("[");
+		for (int i = 0; i < values.length; i++) {
+			array.append((i == 0) ? "" : ", ").append(values[i]);
+		}
+		return array.append("]").toString();
+	}
+}
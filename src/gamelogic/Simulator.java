@@ -1,53 +1,230 @@
 package gamelogic;
 
-import java.util.Random;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import gamelogic.Gamelogic.Boardstate;
 
+/**
+ * Plays random games on several cores with the Playout kernel. The games are split into batches, every batch has its own
+ * random generator split from the seed in batch order, so the results for a seed are the same for every number of workers.
+ * During the run a snapshot of the results is written periodically: a line per snapshot into [output].csv,
+ * and all histograms into [output].json. The games are recorded if a file is given with -Dgamelogic.records=[file].
+ * Usage: Simulator [numGames] [numThreads] [seed] [output] [seconds between snapshots]
+ */
 public class Simulator {
 
-	private static final Random rand = new Random();
-
-	public static void main(String[] args) {
-		Gamelogic gamelogic = new Gamelogic(6, 7, 4);
-
-		int simulateGames = 1000000;
-		long movesPlayedSum = 0;
-		long redScore = 0;
-		long yellowScore = 0;
-		long draws = 0;
-		
-		// simulate a bunch of matches
-		for (int i = 0; i < simulateGames; i++) {
-			gamelogic.initNewGame();
-
-			// simulate a single match
-			do {
-				int columnIndex = -1; 
-				while (gamelogic.isPossibleMove(columnIndex) == false) {
-					columnIndex = rand.nextInt(gamelogic.getNumOfColumns());
-				}
-				gamelogic.doMove(columnIndex);
-			} while (gamelogic.didGameEnd() == false);
-
-			if (gamelogic.didPlayerWin(Boardstate.RED)) {
-				redScore ++;
-			} else if (gamelogic.didPlayerWin(Boardstate.YELLOW)) {
-				yellowScore ++;
-			} else if (gamelogic.didGameEndInDraw()) {
-				draws ++;
+	private static final int GAMES_PER_BATCH = 10_000;
+
+	private final int numRows;
+	private final int numColumns;
+	private final int numNeedForWin;
+	private final int numThreads;
+
+	// progress snapshots, no snapshots are written without an output path
+	private Path outputPath;
+	private long snapshotIntervalMillis = 10_000;
+	private GameRecordWriter gameRecordWriter;
+
+	private static class Batch {
+		private final SplittableRandom random;
+		private final int numGames;
+
+		private Batch(SplittableRandom random, int numGames) {
+			this.random = random;
+			this.numGames = numGames;
+		}
+	}
+
+	// hands out the batches in order, the random generator of every batch is split from the seed
+	private static class Batches {
+		private final SplittableRandom seedRandom;
+		private long remainingGames;
+
+		private Batches(long seed, long numGames) {
+			this.seedRandom = new SplittableRandom(seed);
+			this.remainingGames = numGames;
+		}
+
+		// null if all batches are handed out
+		private synchronized Batch next() {
+			if (remainingGames <= 0) {
+				return null;
 			}
-			
-			movesPlayedSum += gamelogic.getNumOfMovesPlayed();
+			int numGames = (int) Math.min(GAMES_PER_BATCH, remainingGames);
+			remainingGames -= numGames;
+			return new Batch(seedRandom.split(), numGames);
+		}
+	}
+
+	public Simulator(int numRows, int numColumns, int numNeedForWin, int numThreads) {
+		this.numRows = numRows;
+		this.numColumns = numColumns;
+		this.numNeedForWin = numNeedForWin;
+		this.numThreads = Math.max(1, numThreads);
+	}
+
+	public static void main(String[] args) throws IOException {
+		long simulateGames = args.length > 0 ? Long.parseLong(args[0]) : 1000000;
+		int numThreads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+		long seed = args.length > 2 ? Long.parseLong(args[2]) : System.nanoTime();
+
+		Simulator simulator = new Simulator(Main.STANDARD_NUM_ROWS, Main.STANDARD_NUM_COLUMNS, Main.STANDARD_NUM_NEED_FOR_WIN, numThreads);
+		if (args.length > 3) {
+			simulator.setOutput(Paths.get(args[3]), args.length > 4 ? (long) (Double.parseDouble(args[4]) * 1000) : 10_000);
+		}
+		GameRecordWriter gameRecordWriter = GameRecordWriter.openFromProperty();
+		simulator.setGameRecordWriter(gameRecordWriter);
+		long startTime = System.nanoTime();
+		SimulationResults results = simulator.simulate(simulateGames, seed);
+		long timeMillis = (System.nanoTime() - startTime) / 1_000_000;
+		if (gameRecordWriter != null) {
+			gameRecordWriter.close();
 		}
-		
+
 		// print statistics
-		System.out.println("   red score: " + redScore);
-		System.out.println("yellow score: " + yellowScore);
-		System.out.println("        draw: " + draws);
-		System.out.println(" total games: " + simulateGames);
-		System.out.println(" total moves: " + movesPlayedSum);
-		System.out.println("avg moves till game finish: " + (double) movesPlayedSum / simulateGames);
+		results.print();
+		System.out.println("     threads: " + numThreads);
+		System.out.println("        seed: " + seed);
+		System.out.println("        time: " + timeMillis + "ms (" + simulateGames * 1000L / Math.max(1, timeMillis) + " games/s)");
+		int numCores = Math.min(numThreads, Runtime.getRuntime().availableProcessors());
+		System.out.println("   playouts per second per core: " + simulateGames * 1000L / Math.max(1, timeMillis) / numCores);
+	}
+
+	/**
+	 * This function turns on the progress snapshots
+	 * @param outputPath the snapshots are written to this path with the endings .csv and .json
+	 */
+	public void setOutput(Path outputPath, long snapshotIntervalMillis) {
+		this.outputPath = outputPath;
+		this.snapshotIntervalMillis = Math.max(1, snapshotIntervalMillis);
+	}
+
+	// the games of a batch are written together, the batches in the order they finish
+	public void setGameRecordWriter(GameRecordWriter gameRecordWriter) {
+		this.gameRecordWriter = gameRecordWriter;
+	}
+
+	/**
+	 * This function plays the games on the workers, they add the results of every finished batch to the total.
+	 * Meanwhile the calling thread writes the snapshots.
+	 */
+	public SimulationResults simulate(long numGames, long seed) {
+		Batches batches = new Batches(seed, numGames);
+		SimulationResults results = new SimulationResults(numRows, numColumns);
+		ExecutorService workers = Executors.newFixedThreadPool(numThreads, runnable -> {
+			Thread thread = new Thread(runnable, "simulator");
+			thread.setDaemon(true);
+			return thread;
+		});
+		List<Future<?>> workerResults = new ArrayList<>();
+		for (int i = 0; i < numThreads; i++) {
+			workerResults.add(workers.submit(() -> {
+				simulateBatches(batches, results);
+				return null;
+			}));
+		}
+		workers.shutdown();
+
+		long startTime = System.nanoTime();
+		try (PrintWriter csvWriter = createCsvWriter()) {
+			try {
+				while (workers.awaitTermination(snapshotIntervalMillis, TimeUnit.MILLISECONDS) == false) {
+					writeSnapshot(results.copy(), csvWriter, startTime);
+				}
+			} catch (InterruptedException e) {
+				e.printStackTrace();
+			}
+			for (Future<?> workerResult : workerResults) {
+				try {
+					workerResult.get();
+				} catch (InterruptedException | ExecutionException e) {
+					e.printStackTrace();
+				}
+			}
+			writeSnapshot(results, csvWriter, startTime);
+		}
+		return results;
+	}
+
+	// one worker: takes the next batch until all batches are played, sums don't depend on which worker played which batch
+	private void simulateBatches(Batches batches, SimulationResults results) throws IOException {
+		Gamelogic emptyBoard = new Gamelogic(numRows, numColumns, numNeedForWin);
+		emptyBoard.initNewGame();
+		Playout playout = new Playout(emptyBoard);
+		SimulationResults batchResults = new SimulationResults(numRows, numColumns);
+		// the records of a batch are collected without the lock of the writer and appended together
+		ByteBuffer batchRecords = null;
+		if (gameRecordWriter != null) {
+			batchRecords = ByteBuffer.allocateDirect(GAMES_PER_BATCH * GameRecordWriter.getMaxRecordSize(numRows, numColumns));
+		}
+		Batch batch;
+		while ((batch = batches.next()) != null) {
+			for (int i = 0; i < batch.numGames; i++) {
+				// simulate a single match
+				playout.reset(emptyBoard);
+				Boardstate winner = playout.play(batch.random);
+				batchResults.addGame(winner, playout.getNumOfMovesPlayed(), playout.getFirstMove());
+				if (batchRecords != null) {
+					GameRecordWriter.putRecord(batchRecords, numRows, numColumns, numNeedForWin, playout.getMoves(),
+							playout.getNumOfMovesPlayed(), true, winner);
+				}
+			}
+			results.add(batchResults);
+			batchResults.clear();
+			if (batchRecords != null) {
+				batchRecords.flip();
+				gameRecordWriter.writeBatch(batchRecords, batch.numGames);
+				batchRecords.clear();
+			}
+		}
+	}
+
+	private PrintWriter createCsvWriter() {
+		if (outputPath == null) {
+			return null;
+		}
+		try {
+			PrintWriter csvWriter = new PrintWriter(Files.newBufferedWriter(getOutputPath(".csv")));
+			csvWriter.println("time_ms," + SimulationResults.getCsvHeader());
+			return csvWriter;
+		} catch (IOException e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	// the csv gets a new line, the json file is replaced at once, so it can be read at any time
+	private void writeSnapshot(SimulationResults snapshot, PrintWriter csvWriter, long startTime) {
+		if (csvWriter == null) {
+			return;
+		}
+		csvWriter.println((System.nanoTime() - startTime) / 1_000_000 + "," + snapshot.toCsvRow());
+		csvWriter.flush();
+		try {
+			Path jsonPath = getOutputPath(".json");
+			Path temporaryPath = getOutputPath(".json.tmp");
+			Files.writeString(temporaryPath, snapshot.toJson());
+			Files.move(temporaryPath, jsonPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
 	}
 
+	private Path getOutputPath(String ending) {
+		return outputPath.resolveSibling(outputPath.getFileName() + ending);
+	}
 }
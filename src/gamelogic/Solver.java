@@ -0,0 +1,381 @@
+package gamelogic;
+
+import java.util.function.BooleanSupplier;
+
+import gamelogic.TranspositionTable.ReplacementPolicy;
+
+/**
+ * Perfect-play solver for the standard 6x7 board with 4 to win.
+ * It proves the game-theoretic value of a position by searching until the end of the game, on its own bitboards
+ * and with its own transposition table.
+ *
+ * Scores are from the view of the player to move: 0 is a draw, a positive score is a win and a negative score a loss.
+ * The sooner the game is won, the higher the score: a win with the winner's last coin scores 1,
+ * every coin earlier scores one more.
+ */
+public class Solver {
+
+	private static final int WIDTH = Main.STANDARD_NUM_COLUMNS;
+	private static final int HEIGHT = Main.STANDARD_NUM_ROWS;
+	private static final int NUM_CELLS = WIDTH * HEIGHT;
+
+	// returned if the search was stopped before the position was solved
+	public static final int UNKNOWN_SCORE = Integer.MIN_VALUE;
+
+	public static final int DEFAULT_TABLE_SIZE_MB = 64;
+	private static final int NODES_BETWEEN_TIME_CHECKS = 1024;
+
+	// every column uses HEIGHT + 1 bits from the bottom up, like the bitboards of Gamelogic
+	private static final long BOTTOM_MASK = createBottomMask();
+	private static final long BOARD_MASK = BOTTOM_MASK * ((1L << HEIGHT) - 1);
+
+	// the columns in the order they are searched, center first
+	private static final int[] SEARCH_ORDER = {3, 2, 4, 1, 5, 0, 6};
+	// horizontal and both diagonals: shift by one column, one column and a row down, one column and a row up
+	private static final int[] LINE_SHIFTS = {HEIGHT + 1, HEIGHT, HEIGHT + 2};
+
+	private final TranspositionTable transpositionTable;
+	// move ordering, indexed by the number of moves played
+	private final long[][] orderedMoves = new long[NUM_CELLS][WIDTH];
+	private final int[][] moveScores = new int[NUM_CELLS][WIDTH];
+	private long nodesVisited;
+	private int bestScore;
+
+	private long timeBudgetMillis = Long.MAX_VALUE;
+	private long deadline;
+	private BooleanSupplier stopCondition = () -> false;
+	private boolean searchAborted;
+
+	public Solver() {
+		this(DEFAULT_TABLE_SIZE_MB);
+	}
+
+	public Solver(int tableSizeMB) {
+		// deeper entries are not worth more here, every entry is a bound on the final result
+		transpositionTable = new TranspositionTable(tableSizeMB, ReplacementPolicy.ALWAYS_REPLACE);
+	}
+
+	private static long createBottomMask() {
+		long bottomMask = 0;
+		for (int colInd = 0; colInd < WIDTH; colInd++) {
+			bottomMask |= 1L << (colInd * (HEIGHT + 1));
+		}
+		return bottomMask;
+	}
+
+	public static boolean canSolve(Gamelogic position) {
+		return position.isStandardSize() && position.getNumNeedForWin() == Main.STANDARD_NUM_NEED_FOR_WIN;
+	}
+
+	public void reset() {
+		transpositionTable.clear();
+	}
+
+	// the search is stopped after the time budget, the result is UNKNOWN_SCORE then
+	public void setTimeBudget(long timeBudgetMillis) {
+		this.timeBudgetMillis = timeBudgetMillis;
+	}
+
+	// the search is also stopped as soon as the condition is true, it is checked together with the time budget
+	public void setStopCondition(BooleanSupplier stopCondition) {
+		this.stopCondition = stopCondition;
+	}
+
+	public long getNodesVisited() {
+		return nodesVisited;
+	}
+
+	/**
+	 * This function computes the exact score of the position
+	 * @return the score from the view of the player to move, or UNKNOWN_SCORE if the time budget ran out
+	 */
+	public int solve(Gamelogic position) {
+		startSearch(position);
+		return solvePosition(position, false);
+	}
+
+	/**
+	 * This function only computes whether the position is won, drawn or lost, which is a lot faster than the exact score
+	 * @return 1 for a win, 0 for a draw and -1 for a loss of the player to move, or UNKNOWN_SCORE if the time budget ran out
+	 */
+	public int solveWeak(Gamelogic position) {
+		startSearch(position);
+		return solvePosition(position, true);
+	}
+
+	private void startSearch(Gamelogic position) {
+		if (canSolve(position) == false) {
+			throw new IllegalArgumentException("the solver only works on the standard board");
+		}
+		nodesVisited = 0;
+		searchAborted = false;
+		deadline = System.currentTimeMillis() + Math.min(timeBudgetMillis, Long.MAX_VALUE / 2);
+	}
+
+	private int solvePosition(Gamelogic position, boolean weak) {
+		int movesPlayed = position.getNumOfMovesPlayed();
+		int score;
+		if (position.didGameEndInWin()) {
+			// the player who just moved has won with its last coin
+			score = -(NUM_CELLS + 2 - movesPlayed) / 2;
+		} else if (position.didGameEndInDraw()) {
+			score = 0;
+		} else {
+			score = solve(position.getCurrentPlayerStones(), position.getOccupiedCells(), movesPlayed, weak);
+		}
+		if (searchAborted) {
+			return UNKNOWN_SCORE;
+		}
+		return weak ? Integer.signum(score) : score;
+	}
+
+	/**
+	 * This function scores every move of the position
+	 * @return the score of every column from the view of the player to move, UNKNOWN_SCORE for impossible moves
+	 * or if the time budget ran out
+	 */
+	public int[] analyze(Gamelogic position) {
+		startSearch(position);
+		int[] scores = new int[WIDTH];
+		for (int colInd = 0; colInd < WIDTH; colInd++) {
+			scores[colInd] = UNKNOWN_SCORE;
+			if (position.doMove(colInd) == false) {
+				continue;
+			}
+			int score = solvePosition(position, false);
+			position.undoLastMove();
+			if (score == UNKNOWN_SCORE) {
+				return scores;
+			}
+			scores[colInd] = -score;
+		}
+		return scores;
+	}
+
+	/**
+	 * This function searches the move with the best score, among equal moves the one closest to the center
+	 * @return the column index of the best move, or -1 if the time budget ran out, the score is stored in bestScore
+	 */
+	public int findBestMove(Gamelogic position) {
+		int[] scores = analyze(position);
+		int bestMove = -1;
+		bestScore = UNKNOWN_SCORE;
+		for (int colInd : SEARCH_ORDER) {
+			if (position.isPossibleMove(colInd) == false) {
+				continue;
+			}
+			if (scores[colInd] == UNKNOWN_SCORE) {
+				bestScore = UNKNOWN_SCORE;
+				return -1;
+			}
+			if (bestMove == -1 || scores[colInd] > scores[bestMove]) {
+				bestMove = colInd;
+				bestScore = scores[colInd];
+			}
+		}
+		return bestMove;
+	}
+
+	// the score of the move found by the last findBestMove call
+	public int getBestScore() {
+		return bestScore;
+	}
+
+	// the number of moves of both players until the game ends with the given score, if both play perfectly
+	public static int getMovesUntilEnd(int score, int movesPlayed) {
+		if (score == 0) {
+			return NUM_CELLS - movesPlayed;
+		}
+		// number of coins on the board before the winning coin, the player to move plays when it is even to movesPlayed
+		int coinsBeforeWin = NUM_CELLS + 1 - 2 * Math.abs(score);
+		int winnersParity = (score > 0) ? movesPlayed % 2 : (movesPlayed + 1) % 2;
+		if (coinsBeforeWin % 2 != winnersParity) {
+			coinsBeforeWin--;
+		}
+		return coinsBeforeWin + 1 - movesPlayed;
+	}
+
+	private int solve(long current, long mask, int movesPlayed, boolean weak) {
+		if (canWinNext(current, mask)) {
+			return (NUM_CELLS + 1 - movesPlayed) / 2;
+		}
+
+		// null window searches narrow the range of the score down until it is known (mtd(f) style)
+		int min = -(NUM_CELLS - movesPlayed) / 2;
+		int max = (NUM_CELLS + 1 - movesPlayed) / 2;
+		if (weak) {
+			min = -1;
+			max = 1;
+		}
+		while (min < max && searchAborted == false) {
+			int med = min + (max - min) / 2;
+			// test scores close to 0 first, they are the most likely
+			if (med <= 0 && min / 2 < med) {
+				med = min / 2;
+			} else if (med >= 0 && max / 2 > med) {
+				med = max / 2;
+			}
+			int score = negamax(current, mask, movesPlayed, med, med + 1);
+			if (score <= med) {
+				max = score;
+			} else {
+				min = score;
+			}
+		}
+		return min;
+	}
+
+	/**
+	 * Negamax on bitboards: current are the stones of the player to move, mask are all stones.
+	 * The player to move can't win with the next move, this is checked before the call.
+	 * @return the score if it is inside of the window, otherwise a bound of the score beyond the window
+	 */
+	private int negamax(long current, long mask, int movesPlayed, int alpha, int beta) {
+		nodesVisited++;
+		if (nodesVisited % NODES_BETWEEN_TIME_CHECKS == 0
+				&& (System.currentTimeMillis() >= deadline || stopCondition.getAsBoolean())) {
+			searchAborted = true;
+		}
+		if (searchAborted) {
+			return alpha;
+		}
+
+		long possibleMoves = getNonLosingMoves(current, mask);
+		if (possibleMoves == 0) {
+			// every move lets the opponent win
+			return -(NUM_CELLS - movesPlayed) / 2;
+		}
+		if (movesPlayed >= NUM_CELLS - 2) {
+			// no one can win with the last two coins anymore
+			return 0;
+		}
+
+		// the opponent can't win with its next move, so the player to move loses at best with its second next coin
+		int min = -(NUM_CELLS - 2 - movesPlayed) / 2;
+		if (alpha < min) {
+			alpha = min;
+			if (alpha >= beta) {
+				return alpha;
+			}
+		}
+
+		// the player to move can't win with its next coin
+		int max = (NUM_CELLS - 1 - movesPlayed) / 2;
+		long key = getKey(current, mask);
+		long entry = transpositionTable.probe(key);
+		if (entry != TranspositionTable.NO_ENTRY) {
+			int value = TranspositionTable.getValue(entry);
+			if (TranspositionTable.getBound(entry) == TranspositionTable.LOWER_BOUND) {
+				min = value;
+				if (alpha < min) {
+					alpha = min;
+					if (alpha >= beta) {
+						return alpha;
+					}
+				}
+			} else {
+				max = value;
+			}
+		}
+		if (beta > max) {
+			beta = max;
+			if (alpha >= beta) {
+				return beta;
+			}
+		}
+
+		// moves that create more winning cells first, ties in center order
+		long[] moves = orderedMoves[movesPlayed];
+		int[] scores = moveScores[movesPlayed];
+		int numMoves = 0;
+		for (int colInd : SEARCH_ORDER) {
+			long move = possibleMoves & getColumnMask(colInd);
+			if (move == 0) {
+				continue;
+			}
+			int score = Long.bitCount(getWinningCells(current | move, mask | move));
+			int i = numMoves++;
+			while (i > 0 && scores[i - 1] < score) {
+				moves[i] = moves[i - 1];
+				scores[i] = scores[i - 1];
+				i--;
+			}
+			moves[i] = move;
+			scores[i] = score;
+		}
+
+		for (int i = 0; i < numMoves; i++) {
+			// the stones of the opponent become the stones of the player to move
+			int score = -negamax(current ^ mask, mask | moves[i], movesPlayed + 1, -beta, -alpha);
+			if (searchAborted) {
+				return alpha;
+			}
+			if (score >= beta) {
+				transpositionTable.store(key, score, 0, TranspositionTable.LOWER_BOUND, -1);
+				return score;
+			}
+			if (score > alpha) {
+				alpha = score;
+			}
+		}
+		transpositionTable.store(key, alpha, 0, TranspositionTable.UPPER_BOUND, -1);
+		return alpha;
+	}
+
+	// current + mask is unique for every position, the multiplication spreads the bits over the whole key
+	private static long getKey(long current, long mask) {
+		return (current + mask) * 0x9E3779B97F4A7C15L;
+	}
+
+	private static boolean canWinNext(long current, long mask) {
+		return (getWinningCells(current, mask) & getPossibleMoves(mask)) != 0;
+	}
+
+	// the cells the next coin can be dropped into
+	private static long getPossibleMoves(long mask) {
+		return (mask + BOTTOM_MASK) & BOARD_MASK;
+	}
+
+	/**
+	 * This function returns the moves that don't let the opponent win with the next move
+	 * @return the cells of the moves, 0 if every move loses
+	 */
+	private static long getNonLosingMoves(long current, long mask) {
+		long possibleMoves = getPossibleMoves(mask);
+		long opponentWinningCells = getWinningCells(current ^ mask, mask);
+		long forcedMoves = possibleMoves & opponentWinningCells;
+		if (forcedMoves != 0) {
+			// the opponent has two winning moves -> can't block both
+			if ((forcedMoves & (forcedMoves - 1)) != 0) {
+				return 0;
+			}
+			possibleMoves = forcedMoves;
+		}
+		// don't play below a winning cell of the opponent
+		return possibleMoves & ~(opponentWinningCells >>> 1);
+	}
+
+	/**
+	 * This function computes the empty cells that would complete a line of four for the given stones
+	 * @return the cells as a bitboard
+	 */
+	private static long getWinningCells(long stones, long mask) {
+		// vertical: three stones below the cell
+		long winningCells = (stones << 1) & (stones << 2) & (stones << 3);
+
+		// horizontal and both diagonals
+		for (int shift : LINE_SHIFTS) {
+			long pair = (stones << shift) & (stones << 2 * shift);
+			winningCells |= pair & (stones << 3 * shift);
+			winningCells |= pair & (stones >>> shift);
+			pair = (stones >>> shift) & (stones >>> 2 * shift);
+			winningCells |= pair & (stones << shift);
+			winningCells |= pair & (stones >>> 3 * shift);
+		}
+		return winningCells & (BOARD_MASK ^ mask);
+	}
+
+	private static long getColumnMask(int colInd) {
+		return ((1L << HEIGHT) - 1) << colInd * (HEIGHT + 1);
+	}
+}
@@ -0,0 +1,297 @@
+package gamelogic;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import gamelogic.TranspositionTable.ReplacementPolicy;
+
+/**
+ * Plays bots against each other without the window, to check that a faster search also plays stronger.
+ * Every pairing plays the given number of games with alternating colours, several games run in parallel.
+ * Bots: simple, minimax:[ms per move], mcts:[ms per move]
+ * The games are recorded if a file is given with -Dgamelogic.records=[file].
+ * Usage: Tournament [numRows] [numColumns] [numNeedForWin] [games per pairing] [round-robin|gauntlet] [numThreads] [bots...]
+ */
+public class Tournament {
+
+	public enum Format {
+		// every bot plays against every other bot
+		ROUND_ROBIN,
+		// the first bot plays against all others
+		GAUNTLET
+	}
+
+	public static final long DEFAULT_TIME_BUDGET_MILLIS = 100;
+	// the bots of every worker have their own transposition table
+	private static final int TABLE_SIZE_MB = 16;
+	private static final double Z_95 = 1.96;
+
+	private final int numRows;
+	private final int numColumns;
+	private final int numNeedForWin;
+	private final String[] botSpecs;
+	private final int numThreads;
+
+	// every worker thread plays with its own instances of the bots
+	private final ThreadLocal<Bot[]> workerBots;
+
+	// wins[i][j] is the number of games bot i won against bot j
+	private final long[][] wins;
+	private final long[][] draws;
+	// games that failed with an exception of a bot or an impossible move, they are not in the wins and draws
+	private final long[][] failures;
+	private final long[] moveNanos;
+	private final long[] numMoves;
+	private GameRecordWriter gameRecordWriter;
+
+	// result of one game, the winner is -1 for a draw
+	private static class GameResult {
+		private final int[] players = new int[2];
+		private final long[] moveNanos = new long[2];
+		private final long[] numMoves = new long[2];
+		private int winner = -1;
+	}
+
+	public Tournament(int numRows, int numColumns, int numNeedForWin, String[] botSpecs, int numThreads) {
+		this.numRows = numRows;
+		this.numColumns = numColumns;
+		this.numNeedForWin = numNeedForWin;
+		this.botSpecs = botSpecs;
+		this.numThreads = Math.max(1, numThreads);
+		this.workerBots = ThreadLocal.withInitial(this::createBots);
+
+		int numBots = botSpecs.length;
+		this.wins = new long[numBots][numBots];
+		this.draws = new long[numBots][numBots];
+		this.failures = new long[numBots][numBots];
+		this.moveNanos = new long[numBots];
+		this.numMoves = new long[numBots];
+		// throw for unknown bots before any game is started
+		createBots();
+	}
+
+	public static void main(String[] args) throws IOException {
+		int numRows = args.length > 0 ? Integer.parseInt(args[0]) : Main.STANDARD_NUM_ROWS;
+		int numColumns = args.length > 1 ? Integer.parseInt(args[1]) : Main.STANDARD_NUM_COLUMNS;
+		int numNeedForWin = args.length > 2 ? Integer.parseInt(args[2]) : Main.STANDARD_NUM_NEED_FOR_WIN;
+		int gamesPerPairing = args.length > 3 ? Integer.parseInt(args[3]) : 20;
+		Format format = args.length > 4 ? Format.valueOf(args[4].toUpperCase().replace('-', '_')) : Format.ROUND_ROBIN;
+		int numThreads = args.length > 5 ? Integer.parseInt(args[5]) : Runtime.getRuntime().availableProcessors();
+		String[] botSpecs = args.length > 6 ? Arrays.copyOfRange(args, 6, args.length) : new String[] {"simple", "minimax:100", "mcts:100"};
+
+		Tournament tournament = new Tournament(numRows, numColumns, numNeedForWin, botSpecs, numThreads);
+		GameRecordWriter gameRecordWriter = GameRecordWriter.openFromProperty();
+		tournament.setGameRecordWriter(gameRecordWriter);
+		long startTime = System.currentTimeMillis();
+		tournament.play(format, gamesPerPairing);
+		long endTime = System.currentTimeMillis();
+		if (gameRecordWriter != null) {
+			gameRecordWriter.close();
+		}
+
+		// print statistics
+		tournament.printResults();
+		System.out.println("       board: " + numRows + "x" + numColumns + ", " + numNeedForWin + " to win");
+		System.out.println("      format: " + format + ", " + gamesPerPairing + " games per pairing");
+		System.out.println("     threads: " + numThreads);
+		System.out.println(" time needed: " + (endTime - startTime) + "ms");
+	}
+
+	private Bot[] createBots() {
+		Bot[] bots = new Bot[botSpecs.length];
+		for (int i = 0; i < botSpecs.length; i++) {
+			bots[i] = createBot(botSpecs[i]);
+		}
+		return bots;
+	}
+
+	// the games run in parallel, so every bot searches on one thread
+	private static Bot createBot(String botSpec) {
+		String name = botSpec.split(":")[0];
+		switch (name) {
+		case "simple":
+			return new SimpleBot();
+
+		case "minimax":
+			return new MinimaxBot(TABLE_SIZE_MB, ReplacementPolicy.DEPTH_PREFERRED);
+
+		case "mcts":
+			return new MctsBot(1, MctsBot.DEFAULT_TREE_CAPACITY, System.nanoTime());
+
+		default:
+			throw new IllegalArgumentException("unknown bot: " + botSpec);
+		}
+	}
+
+	private static long getTimeBudget(String botSpec) {
+		int separator = botSpec.indexOf(':');
+		return (separator >= 0) ? Long.parseLong(botSpec.substring(separator + 1)) : DEFAULT_TIME_BUDGET_MILLIS;
+	}
+
+	public void setGameRecordWriter(GameRecordWriter gameRecordWriter) {
+		this.gameRecordWriter = gameRecordWriter;
+	}
+
+	/**
+	 * This function plays all games of the tournament and adds up their results
+	 */
+	public void play(Format format, int gamesPerPairing) {
+		ExecutorService workers = Executors.newFixedThreadPool(numThreads, runnable -> {
+			Thread thread = new Thread(runnable, "tournament");
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		// alternating colours: every other game of a pairing is started by the second bot
+		List<Future<GameResult>> gameResults = new ArrayList<>();
+		List<int[]> gamePlayers = new ArrayList<>();
+		for (int first = 0; first < botSpecs.length; first++) {
+			for (int second = first + 1; second < botSpecs.length; second++) {
+				if (format == Format.GAUNTLET && first > 0) {
+					continue;
+				}
+				for (int game = 0; game < gamesPerPairing; game++) {
+					int red = (game % 2 == 0) ? first : second;
+					int yellow = (game % 2 == 0) ? second : first;
+					gameResults.add(workers.submit(() -> playGame(red, yellow)));
+					gamePlayers.add(new int[] {red, yellow});
+				}
+			}
+		}
+
+		for (int i = 0; i < gameResults.size(); i++) {
+			try {
+				addResult(gameResults.get(i).get());
+			} catch (InterruptedException | ExecutionException e) {
+				e.printStackTrace();
+				int[] players = gamePlayers.get(i);
+				failures[players[0]][players[1]]++;
+				failures[players[1]][players[0]]++;
+			}
+		}
+		workers.shutdown();
+	}
+
+	private GameResult playGame(int red, int yellow) throws InterruptedException, ExecutionException, IOException {
+		Bot[] bots = workerBots.get();
+		GameResult result = new GameResult();
+		result.players[0] = red;
+		result.players[1] = yellow;
+		bots[red].initNewGame();
+		bots[yellow].initNewGame();
+
+		Gamelogic gamelogic = new Gamelogic(numRows, numColumns, numNeedForWin);
+		gamelogic.initNewGame();
+		while (gamelogic.didGameEnd() == false) {
+			int side = gamelogic.getNumOfMovesPlayed() % 2;
+			int player = result.players[side];
+			long startTime = System.nanoTime();
+			int move = bots[player].requestMove(gamelogic, getTimeBudget(botSpecs[player])).get();
+			result.moveNanos[side] += System.nanoTime() - startTime;
+			result.numMoves[side]++;
+			if (gamelogic.doMove(move) == false) {
+				throw new IllegalStateException(botSpecs[player] + " played the impossible move " + move);
+			}
+		}
+
+		if (gamelogic.didGameEndInWin()) {
+			// the player who made the last move has won
+			result.winner = result.players[(gamelogic.getNumOfMovesPlayed() - 1) % 2];
+		}
+		if (gameRecordWriter != null) {
+			gameRecordWriter.write(gamelogic);
+		}
+		return result;
+	}
+
+	private void addResult(GameResult result) {
+		int red = result.players[0];
+		int yellow = result.players[1];
+		if (result.winner == -1) {
+			draws[red][yellow]++;
+			draws[yellow][red]++;
+		} else {
+			int loser = (result.winner == red) ? yellow : red;
+			wins[result.winner][loser]++;
+		}
+		for (int side = 0; side < 2; side++) {
+			moveNanos[result.players[side]] += result.moveNanos[side];
+			numMoves[result.players[side]] += result.numMoves[side];
+		}
+	}
+
+	public void printResults() {
+		// every pairing
+		for (int first = 0; first < botSpecs.length; first++) {
+			for (int second = first + 1; second < botSpecs.length; second++) {
+				long games = wins[first][second] + draws[first][second] + wins[second][first] + failures[first][second];
+				if (games > 0) {
+					System.out.println(botSpecs[first] + " vs " + botSpecs[second] + ": "
+							+ formatResult(wins[first][second], draws[first][second], wins[second][first])
+							+ formatFailures(failures[first][second]));
+				}
+			}
+		}
+
+		// every bot against all of its opponents
+		for (int bot = 0; bot < botSpecs.length; bot++) {
+			long botWins = 0;
+			long botDraws = 0;
+			long botLosses = 0;
+			long botFailures = 0;
+			for (int opponent = 0; opponent < botSpecs.length; opponent++) {
+				botWins += wins[bot][opponent];
+				botDraws += draws[bot][opponent];
+				botLosses += wins[opponent][bot];
+				botFailures += failures[bot][opponent];
+			}
+			System.out.println(String.format("%12s: %s, %.2fms per move", botSpecs[bot],
+					formatResult(botWins, botDraws, botLosses), moveNanos[bot] / 1e6 / Math.max(1, numMoves[bot]))
+					+ formatFailures(botFailures));
+		}
+	}
+
+	// failed games are printed separately, so a broken bot doesn't look like a clean score
+	private static String formatFailures(long failures) {
+		return (failures > 0) ? ", " + failures + " failed" : "";
+	}
+
+	private static String formatResult(long wins, long draws, long losses) {
+		double[] elo = getEloDifference(wins, draws, losses);
+		return String.format("+%d =%d -%d, score %.1f%%, elo %+.0f [%+.0f, %+.0f]",
+				wins, draws, losses, 100 * getScore(wins, draws, losses), elo[0], elo[1], elo[2]);
+	}
+
+	private static double getScore(long wins, long draws, long losses) {
+		return (wins + draws / 2.0) / Math.max(1, wins + draws + losses);
+	}
+
+	/**
+	 * This function estimates the elo difference from the score, with the 95% confidence interval
+	 * from the standard error of the mean score per game
+	 * @return the elo difference, the lower and the upper bound of the interval
+	 */
+	public static double[] getEloDifference(long wins, long draws, long losses) {
+		long games = Math.max(1, wins + draws + losses);
+		double score = getScore(wins, draws, losses);
+		double variance = (wins * Math.pow(1 - score, 2) + draws * Math.pow(0.5 - score, 2) + losses * Math.pow(score, 2)) / games;
+		double error = Z_95 * Math.sqrt(variance / games);
+		return new double[] {scoreToElo(score), scoreToElo(score - error), scoreToElo(score + error)};
+	}
+
+	// a score of 0 or 1 means an infinite difference
+	private static double scoreToElo(double score) {
+		if (score <= 0) {
+			return Double.NEGATIVE_INFINITY;
+		} else if (score >= 1) {
+			return Double.POSITIVE_INFINITY;
+		}
+		return -400 * Math.log10(1 / score - 1);
+	}
+}
@@ -0,0 +1,138 @@
+package gamelogic;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-size hash table for search results, stored in primitive arrays so that lookups don't box.
+ * Entries are grouped into small buckets; a full bucket gives up one of its entries depending on the replacement policy.
+ *
+ * The table can be shared by several search threads without locking: every entry is packed into one long and the key
+ * is stored xor-ed with it, so an entry that was torn by two threads writing at the same time doesn't match its key anymore.
+ */
+public class TranspositionTable {
+
+	public enum ReplacementPolicy {
+		// the new entry always overwrites an entry of the bucket
+		ALWAYS_REPLACE,
+		// the new entry overwrites the entry of the bucket that was searched least deep
+		DEPTH_PREFERRED
+	}
+
+	// bound types: the stored value is exact, or the real value is at least / at most the stored value
+	public static final byte EXACT = 0;
+	public static final byte LOWER_BOUND = 1;
+	public static final byte UPPER_BOUND = 2;
+
+	// returned by probe if the key is not stored
+	public static final long NO_ENTRY = 0;
+
+	// entry layout: value (32 bits) | depth (8 bits) | bound (8 bits) | best move (8 bits) | used flag
+	private static final int DEPTH_SHIFT = 32;
+	private static final int BOUND_SHIFT = 40;
+	private static final int BEST_MOVE_SHIFT = 48;
+	private static final long USED_FLAG = 1L << 56;
+
+	// key + entry
+	private static final int ENTRY_SIZE_BYTES = 2 * Long.BYTES;
+	private static final int BUCKET_SIZE = 4;
+
+	private final ReplacementPolicy replacementPolicy;
+	private final int capacity;
+	private final long[] keys;
+	private final long[] entries;
+
+	public TranspositionTable(int sizeInMB, ReplacementPolicy replacementPolicy) {
+		this.replacementPolicy = replacementPolicy;
+
+		// round down to a power of two, so the index is a simple bit mask
+		long maxEntries = Math.max(BUCKET_SIZE, (long) sizeInMB * 1024 * 1024 / ENTRY_SIZE_BYTES);
+		this.capacity = (int) Math.min(Long.highestOneBit(maxEntries), 1 << 30);
+
+		this.keys = new long[capacity];
+		this.entries = new long[capacity];
+	}
+
+	public void clear() {
+		Arrays.fill(entries, NO_ENTRY);
+	}
+
+	/**
+	 * This function searches the table for the given key
+	 * @return the packed entry, or NO_ENTRY if the key is not stored
+	 */
+	public long probe(long key) {
+		int bucket = getBucket(key);
+		for (int index = bucket; index < bucket + BUCKET_SIZE; index++) {
+			long entry = entries[index];
+			if (entry != NO_ENTRY && (keys[index] ^ entry) == key) {
+				return entry;
+			}
+		}
+		return NO_ENTRY;
+	}
+
+	public static int getValue(long entry) {
+		return (int) entry;
+	}
+
+	public static int getDepth(long entry) {
+		return (int) (entry >>> DEPTH_SHIFT) & 0xFF;
+	}
+
+	public static byte getBound(long entry) {
+		return (byte) (entry >>> BOUND_SHIFT);
+	}
+
+	// returns the column that was best or caused the cutoff, -1 if there is none
+	public static int getBestMove(long entry) {
+		return (byte) (entry >>> BEST_MOVE_SHIFT);
+	}
+
+	/**
+	 * This function stores the entry, which replaces an entry of the bucket if the bucket is full
+	 * @return true if the entry of another position was replaced, false otherwise
+	 */
+	public boolean store(long key, int value, int depth, byte bound, int bestMove) {
+		int bucket = getBucket(key);
+
+		// reuse the entry of the same key or an empty one, otherwise remember the shallowest entry
+		int replaceIndex = bucket + ((int) (key >>> 32) & (BUCKET_SIZE - 1));
+		int shallowestIndex = bucket;
+		boolean replacement = true;
+		for (int index = bucket; index < bucket + BUCKET_SIZE; index++) {
+			long entry = entries[index];
+			if (entry == NO_ENTRY || (keys[index] ^ entry) == key) {
+				replaceIndex = index;
+				shallowestIndex = index;
+				replacement = false;
+				break;
+			}
+			if (getDepth(entry) < getDepth(entries[shallowestIndex])) {
+				shallowestIndex = index;
+			}
+		}
+
+		int index = (replacementPolicy == ReplacementPolicy.DEPTH_PREFERRED) ? shallowestIndex : replaceIndex;
+
+		long entry = (value & 0xFFFFFFFFL)
+				| ((long) Math.min(depth, 0xFF) << DEPTH_SHIFT)
+				| ((long) (bound & 0xFF) << BOUND_SHIFT)
+				| ((long) (bestMove & 0xFF) << BEST_MOVE_SHIFT)
+				| USED_FLAG;
+		keys[index] = key ^ entry;
+		entries[index] = entry;
+		return replacement;
+	}
+
+	private int getBucket(long key) {
+		return (int) key & (capacity - BUCKET_SIZE);
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	public ReplacementPolicy getReplacementPolicy() {
+		return replacementPolicy;
+	}
+}